@@ -0,0 +1,54 @@
+package com.example.payment_service.event.payload;
+
+import com.example.payment_service.configuration.JacksonConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of the payment.completed payload (outbox row / Kafka record)
+ *
+ * Uses the application ObjectMapper from JacksonConfig.
+ *
+ * Run: mvn -Pbenchmark test-compile exec:exec -Djmh.include=PaymentEventSerializationBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PaymentEventSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private PaymentCompletedEvent event;
+
+    @Setup
+    public void setup() {
+        objectMapper = new JacksonConfig().objectMapper();
+
+        event = PaymentCompletedEvent.builder()
+                .paymentId(1024L)
+                .orderId(2048L)
+                .userId("42")
+                .amount(new BigDecimal("450000.00"))
+                .currency("VND")
+                .paymentMethod("PayOS")
+                .timestamp(LocalDateTime.now())
+                .credits(1100)
+                .build();
+    }
+
+    @Benchmark
+    public String jacksonToString() throws Exception {
+        return objectMapper.writeValueAsString(event);
+    }
+
+    @Benchmark
+    public byte[] jacksonToBytes() throws Exception {
+        return objectMapper.writeValueAsBytes(event);
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.payment_service.payos;
+
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Blocking vs async createPaymentLink against a local stub that answers with a fixed latency
+ *
+ * Both modes run with the same number of requests in flight: blocking pins one of inFlight
+ * caller threads per request, async enqueues from the benchmark thread and holds a permit of
+ * inFlight per request until its future completes. The difference is the cost of the calling
+ * model, not of the concurrency limit. Scores are requests per second.
+ *
+ * Run: mvn -Pbenchmark test-compile exec:exec -Djmh.include=PayOSClientBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PayOSClientBenchmark {
+
+    private static final int STUB_LATENCY_MS = 50;
+    private static final int REQUESTS_PER_OP = 256;
+
+    private static final String CHECKOUT_RESPONSE = "{\"code\":\"00\",\"desc\":\"success\",\"data\":{"
+            + "\"bin\":\"970422\",\"accountNumber\":\"VQRQAEPDT8663\",\"accountName\":\"STUB\","
+            + "\"amount\":100000,\"description\":\"Purchase Basic\",\"orderCode\":1730000000000,"
+            + "\"currency\":\"VND\",\"paymentLinkId\":\"stub-link\",\"status\":\"PENDING\","
+            + "\"checkoutUrl\":\"http://localhost/checkout\",\"qrCode\":\"stub\"}}";
+
+    @Param({"16", "64"})
+    public int inFlight;
+
+    private HttpServer server;
+    private PayOS payOS;
+    private ExecutorService callers;
+    private Semaphore permits;
+    private PaymentData[] requests;
+
+    @Setup
+    public void setup() throws Exception {
+        server = startStubServer();
+        String domain = "http://localhost:" + server.getAddress().getPort();
+
+        // The dispatcher never limits below inFlight, so the permits/threads set the concurrency
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(inFlight);
+        dispatcher.setMaxRequestsPerHost(inFlight);
+        OkHttpClient client = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(inFlight, 5, TimeUnit.MINUTES))
+                .build();
+        payOS = new PayOS("client", "api-key", "checksum", domain, client);
+
+        callers = Executors.newFixedThreadPool(inFlight);
+        permits = new Semaphore(inFlight);
+        requests = new PaymentData[REQUESTS_PER_OP];
+        for (int i = 0; i < REQUESTS_PER_OP; i++) {
+            requests[i] = paymentData(i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        callers.shutdownNow();
+        payOS.shutdown();
+        server.stop(0);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS_PER_OP)
+    public void blocking() throws Exception {
+        List<Future<CheckoutResponseData>> futures = new ArrayList<>(REQUESTS_PER_OP);
+        for (PaymentData data : requests) {
+            futures.add(callers.submit(() -> payOS.createPaymentLink(data)));
+        }
+        for (Future<CheckoutResponseData> future : futures) {
+            future.get();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS_PER_OP)
+    public void async() throws Exception {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[REQUESTS_PER_OP];
+        for (int i = 0; i < REQUESTS_PER_OP; i++) {
+            permits.acquire();
+            futures[i] = payOS.createPaymentLinkAsync(requests[i])
+                    .whenComplete((result, error) -> permits.release());
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+
+    private static PaymentData paymentData(int i) {
+        return PaymentData.builder()
+                .orderCode(1_730_000_000_000L + i)
+                .amount(100000)
+                .description("Purchase Basic")
+                .items(List.of(ItemData.builder().name("Basic - 100 credits").quantity(1).price(100000).build()))
+                .returnUrl("http://localhost/return")
+                .cancelUrl("http://localhost/cancel")
+                .build();
+    }
+
+    private static HttpServer startStubServer() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        byte[] body = CHECKOUT_RESPONSE.getBytes(StandardCharsets.UTF_8);
+
+        server.createContext("/v2/payment-requests", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            try {
+                Thread.sleep(STUB_LATENCY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        // Enough handler threads that the stub itself is never the bottleneck
+        server.setExecutor(Executors.newFixedThreadPool(256, r -> {
+            Thread thread = new Thread(r, "payos-stub");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+        return server;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.payment_service.payos;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PayOS request signing and webhook verification
+ *
+ * Run: mvn -Pbenchmark test-compile exec:exec -Djmh.include=PayOSSignatureBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PayOSSignatureBenchmark {
+
+    private static final String CHECKSUM_KEY = "1a54716c8f0efb2744fb28b6e38b25da7f67a925d98bc1c18bd8faaecadd7675";
+
+    private PayOS payOS;
+    private PaymentData paymentRequest;
+    private Webhook webhook;
+
+    @Setup
+    public void setup() throws Exception {
+        payOS = new PayOS("client-id", "api-key", CHECKSUM_KEY);
+
+        paymentRequest = PaymentData.builder()
+                .orderCode(1_730_000_000_123L)
+                .amount(100000)
+                .description("Purchase Premium")
+                .items(List.of(ItemData.builder().name("Premium - 1000 credits").quantity(1).price(100000).build()))
+                .returnUrl("https://app.example.com/payment/success")
+                .cancelUrl("https://app.example.com/payment/cancel")
+                .build();
+
+        WebhookData data = WebhookData.builder()
+                .orderCode(1_730_000_000_123L)
+                .amount(100000)
+                .description("Purchase Premium")
+                .accountNumber("12345678")
+                .reference("FT24300123456")
+                .transactionDateTime("2024-10-27 10:15:30")
+                .currency("VND")
+                .paymentLinkId("124c33293c934a85be5b7f8761a27a07")
+                .code("00")
+                .desc("success")
+                .build();
+
+        // Signed the way PayOS documents it: every data field in alphabetical order, null as ""
+        String signed = "accountNumber=" + data.getAccountNumber() + "&amount=" + data.getAmount()
+                + "&code=" + data.getCode() + "&counterAccountBankId=&counterAccountBankName="
+                + "&counterAccountName=&counterAccountNumber=&currency=" + data.getCurrency()
+                + "&desc=" + data.getDesc() + "&description=" + data.getDescription()
+                + "&orderCode=" + data.getOrderCode() + "&paymentLinkId=" + data.getPaymentLinkId()
+                + "&reference=" + data.getReference() + "&transactionDateTime=" + data.getTransactionDateTime()
+                + "&virtualAccountName=&virtualAccountNumber=";
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(CHECKSUM_KEY.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        String signature = HexFormat.of().formatHex(mac.doFinal(signed.getBytes(StandardCharsets.UTF_8)));
+
+        webhook = Webhook.builder()
+                .code("00")
+                .desc("success")
+                .success(true)
+                .data(data)
+                .signature(signature)
+                .build();
+    }
+
+    @Benchmark
+    public String generateSignature() {
+        return payOS.generateSignature(paymentRequest);
+    }
+
+    @Benchmark
+    public WebhookData verifyPaymentWebhookData() throws Exception {
+        return payOS.verifyPaymentWebhookData(webhook);
+    }
+
+    @Benchmark
+    public WebhookVerificationResult verifyWebhookSignatureStrict() {
+        return payOS.verifyWebhookSignature(webhook, WebhookVerificationMode.STRICT);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.payment_service.service;
+
+import com.example.payment_service.dto.response.DailyRevenueResponse;
+import com.example.payment_service.dto.response.RevenueStatsResponse;
+import com.example.payment_service.entity.PaymentDailyRollup;
+import com.example.payment_service.entity.PaymentDailyRollupId;
+import com.example.payment_service.repository.PaymentDailyRollupRepository;
+import com.example.payment_service.repository.PaymentRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * In-process side of the dashboard: folding rollup rows and daily (day, status) totals into responses
+ * Repositories are stubbed with canned rows so only DashboardService's own work is measured
+ *
+ * Run: mvn -Pbenchmark test-compile exec:exec -Djmh.include=DashboardAggregationBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DashboardAggregationBenchmark {
+
+    private static final String[] STATUSES = {"SUCCESS", "FAILED", "PENDING", "CANCELLED"};
+
+    @Param({"30", "365"})
+    public int days;
+
+    private DashboardService dashboardService;
+    private LocalDate startDate;
+    private LocalDate endDate;
+
+    @Setup
+    public void setup() {
+        endDate = LocalDate.now();
+        startDate = endDate.minusDays(days - 1L);
+
+        List<PaymentDailyRollup> rollups = new ArrayList<>();
+        List<Object[]> dailyTotals = new ArrayList<>();
+        for (int i = 0; i < days; i++) {
+            LocalDate date = startDate.plusDays(i);
+            for (String status : STATUSES) {
+                rollups.add(PaymentDailyRollup.builder()
+                        .id(new PaymentDailyRollupId(date, status))
+                        .paymentCount(120L + i)
+                        .totalAmount(BigDecimal.valueOf(12_000_000L + i * 1000L, 2))
+                        .build());
+            }
+            dailyTotals.add(new Object[]{Date.valueOf(date), "SUCCESS", 120L + i, BigDecimal.valueOf(12_000_000L + i * 1000L, 2)});
+            dailyTotals.add(new Object[]{Date.valueOf(date), "FAILED", 7L, BigDecimal.valueOf(700_000L, 2)});
+        }
+        List<Object[]> byStatus = new ArrayList<>();
+        for (String status : STATUSES) {
+            byStatus.add(new Object[]{status, 120L * days, BigDecimal.valueOf(12_000_000L * days, 2)});
+        }
+
+        PaymentRepository paymentRepository = stub(PaymentRepository.class, Map.of(
+                "streamDailyTotalsByStatus", args -> dailyTotals.stream()));
+        PaymentDailyRollupRepository rollupRepository = stub(PaymentDailyRollupRepository.class, Map.of(
+                "findFrom", args -> rollups,
+                "sumByStatus", args -> byStatus));
+
+        dashboardService = new DashboardService(paymentRepository, rollupRepository);
+    }
+
+    @Benchmark
+    public RevenueStatsResponse getRevenueStats() {
+        return dashboardService.getRevenueStats(null, null);
+    }
+
+    @Benchmark
+    public List<DailyRevenueResponse> getDailyRevenue() {
+        return dashboardService.getDailyRevenue(startDate, endDate);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, Map<String, Function<Object[], Object>> answers) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            Function<Object[], Object> answer = answers.get(method.getName());
+            if (answer != null) {
+                return answer.apply(args);
+            }
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> type.getSimpleName() + " stub";
+                };
+            }
+            throw new UnsupportedOperationException(method.getName());
+        });
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.payment_service.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SHA-256 payload hashing used when marking consumed events as processed
+ *
+ * Run: mvn -Pbenchmark test-compile exec:exec -Djmh.include=IdempotentHashBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IdempotentHashBenchmark {
+
+    @Param({"256", "4096"})
+    public int payloadSize;
+
+    private String payload;
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder(payloadSize);
+        sb.append("{\"payment_id\":1024,\"user_id\":\"42\",\"note\":\"");
+        while (sb.length() < payloadSize - 2) {
+            sb.append('x');
+        }
+        payload = sb.append("\"}").toString();
+    }
+
+    @Benchmark
+    public String generateHash() {
+        return IdempotentEventService.generateHash(payload);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.payment_service.service;
+
+import com.example.payment_service.dto.response.OrderResponse;
+import com.example.payment_service.entity.Package;
+import com.example.payment_service.entity.PaymentOrder;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity -> OrderResponse mapping on the order read paths
+ *
+ * Run: mvn -Pbenchmark test-compile exec:exec -Djmh.include=OrderMappingBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderMappingBenchmark {
+
+    private PaymentOrder order;
+    private Package pkg;
+    private LocalDateTime expiresAt;
+
+    @Setup
+    public void setup() {
+        pkg = Package.builder()
+                .id(3L)
+                .name("Premium")
+                .code("PREMIUM")
+                .credits(1000)
+                .bonusCredits(100)
+                .price(new BigDecimal("500000"))
+                .currency("VND")
+                .build();
+
+        order = PaymentOrder.builder()
+                .id(1024L)
+                .userId("42")
+                .packageInfo(pkg)
+                .orderCode("ORD-1A2B3C4D5E6F")
+                .totalAmount(new BigDecimal("500000"))
+                .discountAmount(new BigDecimal("50000"))
+                .finalAmount(new BigDecimal("450000"))
+                .currency("VND")
+                .status("PENDING")
+                .description("Purchase Premium")
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+
+        expiresAt = LocalDateTime.now().plusMinutes(15);
+    }
+
+    @Benchmark
+    public OrderResponse mapToOrderResponse() {
+        return OrderService.mapToOrderResponse(order, pkg, "https://pay.payos.vn/web/124c33293c934a85be5b7f8761a27a07",
+                expiresAt);
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.payment_service.configuration;
+
+import com.example.payment_service.event.dispatch.EventDeliveryClass;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tuning for EventDispatcher
+ */
+@Component
+@ConfigurationProperties(prefix = "events.dispatch")
+@Data
+public class EventDispatchProperties {
+
+    /** Capacity of the in-memory buffer for best-effort events */
+    private int bufferCapacity = 10000;
+
+    /** Max events drained from the buffer per send round */
+    private int batchSize = 200;
+
+    /** How long the drainer waits to fill a batch after the first event arrives */
+    private long lingerMs = 5;
+
+    /** How long dispatch() may block when the buffer is full before dropping */
+    private long enqueueTimeoutMs = 10;
+
+    /** Unacknowledged best-effort sends allowed per topic */
+    private int maxInFlightPerTopic = 1000;
+
+    /** How long the drainer waits for a topic's in-flight permit before dropping */
+    private long inFlightTimeoutMs = 50;
+
+    /** Delivery class per topic; topics not listed use defaultDelivery */
+    private Map<String, EventDeliveryClass> delivery = new HashMap<>(Map.of(
+            "payment.completed", EventDeliveryClass.OUTBOX,
+            "payment.failed", EventDeliveryClass.OUTBOX
+    ));
+
+    private EventDeliveryClass defaultDelivery = EventDeliveryClass.BEST_EFFORT;
+
+    public EventDeliveryClass deliveryFor(String topic) {
+        return delivery.getOrDefault(topic, defaultDelivery);
+    }
+}
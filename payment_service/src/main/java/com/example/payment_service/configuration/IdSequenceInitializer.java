@@ -0,0 +1,64 @@
+package com.example.payment_service.configuration;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves the pooled id sequences past ids that were assigned by IDENTITY columns
+ *
+ * Payment, PaymentOrder, PromotionUsage, OutboxEvent, ProcessedEvent and WebhookInbox take their
+ * ids from sequences with allocationSize 50 and the pooled-lo optimizer
+ * (hibernate.id.optimizer.pooled.preferred), so an instance reserves 50 ids per nextval and
+ * inserts can be JDBC-batched. ddl-auto creates those sequences starting at 1, below the rows
+ * already in the tables; this runs once the EntityManagerFactory (and the schema update) is ready,
+ * before listeners and schedulers start inserting.
+ *
+ * A sequence is only moved while the table holds ids beyond every block it has handed out,
+ * i.e. rows written before the switch - blocks reserved by running instances are never reissued.
+ */
+@Component
+@Slf4j
+public class IdSequenceInitializer {
+
+    private static final int ALLOCATION_SIZE = 50;
+
+    // sequence -> table
+    private static final Map<String, String> SEQUENCES = Map.of(
+            "payments_seq", "payments",
+            "payment_orders_seq", "payment_orders",
+            "promotion_usages_seq", "promotion_usages",
+            "outbox_events_seq", "outbox_events",
+            "processed_events_seq", "processed_events",
+            "webhook_inbox_seq", "webhook_inbox"
+    );
+
+    private static final String ALIGN_SQL =
+            "SELECT setval('%1$s', m.max_id + 1, false) " +
+            "FROM (SELECT COALESCE(MAX(id), 0) AS max_id FROM %2$s) m, %1$s s " +
+            "WHERE m.max_id >= s.last_value + CASE WHEN s.is_called THEN %3$d ELSE 0 END";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdSequenceInitializer(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        // entityManagerFactory is only a dependency: the schema update has created the sequences by now
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void alignSequences() {
+        for (Map.Entry<String, String> sequence : SEQUENCES.entrySet()) {
+            List<Long> moved = jdbcTemplate.queryForList(
+                    String.format(ALIGN_SQL, sequence.getKey(), sequence.getValue(), ALLOCATION_SIZE), Long.class);
+            if (!moved.isEmpty()) {
+                log.info("Id sequence {} moved to {} past existing {} rows",
+                        sequence.getKey(), moved.get(0), sequence.getValue());
+            }
+        }
+    }
+}
@@ -1,13 +1,19 @@
 package com.example.payment_service.configuration;
 
 import com.example.payment_service.payos.PayOS;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.Data;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class PayOSConfiguration {
 
@@ -19,9 +25,50 @@ public class PayOSConfiguration {
 
     @Value("${payos.checksum-key}")
     private String checksumKey;
-    
+
+    @Value("${payos.payos-domain:" + PayOS.DEFAULT_PAYOS_DOMAIN + "}")
+    private String payosDomain;
+
+    // Dispatcher limits for async calls (OkHttp defaults are 64 / 5)
+    @Value("${payos.http.max-requests:64}")
+    private int maxRequests;
+
+    @Value("${payos.http.max-requests-per-host:32}")
+    private int maxRequestsPerHost;
+
+    // Connection pool - keep TLS connections to PayOS warm between checkouts
+    @Value("${payos.http.max-idle-connections:16}")
+    private int maxIdleConnections;
+
+    @Value("${payos.http.keep-alive-seconds:300}")
+    private long keepAliveSeconds;
+
+    @Value("${payos.http.connect-timeout-seconds:10}")
+    private long connectTimeoutSeconds;
+
+    @Value("${payos.http.read-timeout-seconds:30}")
+    private long readTimeoutSeconds;
+
+    @Value("${payos.http.write-timeout-seconds:10}")
+    private long writeTimeoutSeconds;
+
     @Bean
-    public PayOS payOS() {
-        return new PayOS(clientId, apiKey, checksumKey);
+    public OkHttpClient payOSHttpClient() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+        return new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveSeconds, TimeUnit.SECONDS))
+                .connectTimeout(connectTimeoutSeconds, TimeUnit.SECONDS)
+                .writeTimeout(writeTimeoutSeconds, TimeUnit.SECONDS)
+                .readTimeout(readTimeoutSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+    
+    @Bean(destroyMethod = "shutdown")
+    public PayOS payOS(OkHttpClient payOSHttpClient, ObjectMapper objectMapper) {
+        return new PayOS(clientId, apiKey, checksumKey, payosDomain, payOSHttpClient, objectMapper);
     }
 }
@@ -1,6 +1,7 @@
 package com.example.payment_service.controller;
 
 import com.example.payment_service.dto.request.CreateOrderRequest;
+import com.example.payment_service.dto.response.OrderHistoryResponse;
 import com.example.payment_service.dto.response.OrderResponse;
 import com.example.payment_service.service.OrderService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -77,6 +78,24 @@ public class OrderController {
         return ResponseEntity.ok(orders);
     }
     
+    @GetMapping("/my/history")
+    @Operation(summary = "Get my order history",
+               description = "Cursor-paginated orders of the authenticated user, newest first; pass nextCursor to get the next page")
+    public ResponseEntity<OrderHistoryResponse> getMyOrderHistory(
+            @Parameter(description = "Filter by order status (PENDING, COMPLETED, FAILED, CANCELLED)")
+            @RequestParam(required = false) String status,
+            @Parameter(description = "nextCursor of the previous page; omit for the first page")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size (max 100)")
+            @RequestParam(defaultValue = "10") int size,
+            @Parameter(description = "User ID from authentication token")
+            @RequestHeader(value = "X-User-ID", required = false) String userId
+    ) {
+        log.info("Getting order history for user: {}, status: {}, size: {}", userId, status, size);
+        
+        return ResponseEntity.ok(orderService.getOrderHistory(userId, status, cursor, size));
+    }
+    
     @DeleteMapping("/{orderId}/cancel")
     @Operation(summary = "Cancel order", description = "Cancel a pending order")
     public ResponseEntity<OrderResponse> cancelOrder(
@@ -92,6 +111,21 @@ public class OrderController {
         return ResponseEntity.ok(response);
     }
     
+    @PostMapping("/{orderId}/payment-link")
+    @Operation(summary = "Retry payment link", description = "Create the PayOS payment link again for a pending order whose link creation failed")
+    public ResponseEntity<OrderResponse> retryPaymentLink(
+            @Parameter(description = "Order ID")
+            @PathVariable Long orderId,
+            @Parameter(description = "User ID from authentication token")
+            @RequestHeader(value = "X-User-ID", required = false) Long userId
+    ) {
+        userId = userId != null ? userId : 1L; // TODO: Get from JWT auth context
+        log.info("Retrying payment link for order {} of user {}", orderId, userId);
+        
+        OrderResponse response = orderService.retryPaymentLink(orderId, userId);
+        return ResponseEntity.ok(response);
+    }
+    
     @GetMapping("/code/{orderCode}")
     @Operation(summary = "Get order by code", description = "Retrieve order details by order code")
     public ResponseEntity<OrderResponse> getOrderByCode(
@@ -12,6 +12,7 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -148,18 +149,14 @@ public class PackageController {
         }
     }
 
-    @GetMapping("/active")
+    @GetMapping(value = "/active", produces = MediaType.APPLICATION_JSON_VALUE)
     @Operation(summary = "Get active packages", description = "Retrieve all active credit packages ordered by sort order")
-    public ResponseEntity<ApiResponse<List<PackageResponse>>> getActivePackages() {
-        log.info("Getting all active packages");
-
+    public ResponseEntity<?> getActivePackages() {
         try {
-            List<PackageResponse> responses = packageService.getActivePackages();
-            return ResponseEntity.ok(ApiResponse.<List<PackageResponse>>builder()
-                    .code(1000)
-                    .message("Active packages retrieved successfully")
-                    .result(responses)
-                    .build());
+            // Body is serialized once per catalog snapshot, see PackageCatalogCache
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(packageService.getActivePackagesJson());
         } catch (Exception e) {
             log.error("Error getting active packages", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
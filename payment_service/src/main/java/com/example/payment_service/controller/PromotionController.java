@@ -1,6 +1,7 @@
 package com.example.payment_service.controller;
 
 import com.example.payment_service.dto.request.ValidatePromotionRequest;
+import com.example.payment_service.dto.request.ValidatePromotionsRequest;
 import com.example.payment_service.dto.response.PromotionResponse;
 import com.example.payment_service.dto.response.PromotionValidationResponse;
 import com.example.payment_service.entity.Promotion;
@@ -14,7 +15,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.math.BigDecimal;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -42,29 +42,28 @@ public class PromotionController {
     ) {
         log.info("Validating promotion: {} for user: {}, amount: {}", code, userId, request.getAmount());
         
-        try {
-            BigDecimal discount = promotionService.applyPromotion(code, userId, request.getAmount());
-            Promotion promotion = promotionService.getPromotionByCode(code);
-            
-            return ResponseEntity.ok(PromotionValidationResponse.builder()
-                    .valid(true)
-                    .message("Promotion is valid")
-                    .discountAmount(discount)
-                    .bonusCredits(null) // TODO: Add bonus credits logic if needed
-                    .promotionCode(code)
-                    .promotionName(promotion.getName())
-                    .build());
-        } catch (Exception e) {
-            log.warn("Promotion validation failed: {}", e.getMessage());
-            return ResponseEntity.ok(PromotionValidationResponse.builder()
-                    .valid(false)
-                    .message(e.getMessage())
-                    .discountAmount(BigDecimal.ZERO)
-                    .bonusCredits(null)
-                    .promotionCode(code)
-                    .promotionName(null)
-                    .build());
+        PromotionValidationResponse result = promotionService
+                .validatePromotions(List.of(code), userId, List.of(request.getAmount()))
+                .get(0);
+        if (!result.getValid()) {
+            log.warn("Promotion validation failed: {}", result.getMessage());
         }
+        return ResponseEntity.ok(result);
+    }
+    
+    @PostMapping("/validate")
+    @Operation(summary = "Validate promotion codes in batch",
+               description = "Validate every code against every amount for the user in one call; results are ordered by code, then amount")
+    public ResponseEntity<List<PromotionValidationResponse>> validatePromotions(
+            @Valid @RequestBody ValidatePromotionsRequest request,
+            @Parameter(description = "User ID from authentication token")
+            @RequestHeader(value = "X-User-ID", required = false) String userId
+    ) {
+        log.info("Validating {} promotions x {} amounts for user: {}",
+                request.getCodes().size(), request.getAmounts().size(), userId);
+        
+        return ResponseEntity.ok(promotionService.validatePromotions(
+                request.getCodes(), userId, request.getAmounts()));
     }
     
     @GetMapping("/active")
@@ -1,7 +1,10 @@
 package com.example.payment_service.controller;
 
 import com.example.payment_service.payos.Webhook;
-import com.example.payment_service.service.PaymentWebhookService;
+import com.example.payment_service.payos.WebhookData;
+import com.example.payment_service.service.WebhookDeduplicator;
+import com.example.payment_service.service.WebhookIngestionService;
+import com.example.payment_service.service.WebhookSignatureVerifier;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
@@ -22,10 +25,13 @@ import java.util.Map;
 @Tag(name = "Webhooks", description = "Payment webhook handling APIs")
 public class WebhookController {
     
-    private final PaymentWebhookService webhookService;
+    private final WebhookIngestionService webhookIngestionService;
+    private final WebhookDeduplicator webhookDeduplicator;
+    private final WebhookSignatureVerifier signatureVerifier;
     
     @PostMapping("/payos")
-    @Operation(summary = "PayOS webhook", description = "Handle webhook callback from PayOS payment gateway")
+    @Operation(summary = "PayOS webhook",
+               description = "Verify and journal a PayOS webhook callback; the payment is updated asynchronously")
     public ResponseEntity<Map<String, Object>> handlePayOSWebhook(
             @RequestBody Webhook webhook
     ) {
@@ -34,11 +40,20 @@ public class WebhookController {
                 webhook.getCode());
         
         try {
-            webhookService.handlePaymentWebhook(webhook);
+            // Exact redelivery of a webhook this instance already journaled
+            if (webhookDeduplicator.seenRecently(webhook.getData())) {
+                return duplicate(webhook);
+            }
+            
+            // Verified before journaling - rejected webhooks never touch the database
+            WebhookData webhookData = signatureVerifier.verify(webhook);
+            if (!webhookIngestionService.accept(webhook, webhookData)) {
+                return duplicate(webhook);
+            }
             
             return ResponseEntity.ok(Map.of(
                     "error", 0,
-                    "message", "Webhook processed successfully",
+                    "message", "Webhook accepted",
                     "data", webhook.getData()
             ));
         } catch (Exception e) {
@@ -52,6 +67,15 @@ public class WebhookController {
         }
     }
     
+    private ResponseEntity<Map<String, Object>> duplicate(Webhook webhook) {
+        log.debug("Duplicate PayOS webhook ignored: orderCode={}", webhook.getData().getOrderCode());
+        return ResponseEntity.ok(Map.of(
+                "error", 0,
+                "message", "Webhook already received",
+                "data", webhook.getData()
+        ));
+    }
+    
     @PostMapping("/momo")
     @Operation(summary = "MoMo webhook", description = "Handle webhook callback from MoMo e-wallet")
     public ResponseEntity<Map<String, Object>> handleMoMoWebhook(
@@ -0,0 +1,28 @@
+package com.example.payment_service.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ValidatePromotionsRequest {
+    
+    @NotEmpty(message = "At least one promotion code is required")
+    @Size(max = 20, message = "At most 20 promotion codes per request")
+    private List<@NotBlank String> codes;
+    
+    @NotEmpty(message = "At least one amount is required")
+    @Size(max = 20, message = "At most 20 amounts per request")
+    private List<@NotNull BigDecimal> amounts;
+}
@@ -0,0 +1,21 @@
+package com.example.payment_service.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderHistoryResponse {
+    
+    private List<OrderResponse> orders;
+    
+    // Opaque cursor for the next page; null on the last page
+    private String nextCursor;
+    private Boolean hasMore;
+}
@@ -19,4 +19,5 @@ public class PromotionValidationResponse {
     private Integer bonusCredits;
     private String promotionCode;
     private String promotionName;
+    private BigDecimal amount;
 }
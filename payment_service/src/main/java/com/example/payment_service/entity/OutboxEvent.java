@@ -24,8 +24,13 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class OutboxEvent {
 
+    // Ids per nextval of outbox_events_seq (pooled-lo) - EventDispatcher reserves blocks the same way
+    public static final int ID_ALLOCATION_SIZE = 50;
+    public static final int DEFAULT_MAX_RETRY = 5;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_events_seq")
+    @SequenceGenerator(name = "outbox_events_seq", sequenceName = "outbox_events_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     @Column(name = "aggregate_id", nullable = false, length = 100)
@@ -51,7 +56,7 @@ public class OutboxEvent {
 
     @Column(name = "max_retry", nullable = false)
     @Builder.Default
-    private Integer maxRetry = 5;
+    private Integer maxRetry = DEFAULT_MAX_RETRY;
 
     @Column(name = "last_error", columnDefinition = "TEXT")
     private String lastError;
@@ -66,6 +71,16 @@ public class OutboxEvent {
     @Column(name = "next_retry_at")
     private LocalDateTime nextRetryAt;
 
+    /**
+     * Lease held by the publisher instance that claimed this event
+     * Other instances skip the row until locked_until passes
+     */
+    @Column(name = "locked_by", length = 100)
+    private String lockedBy;
+
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+
     /**
      * Calculate exponential backoff for retry
      */
@@ -12,7 +12,10 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "payments")
+@Table(name = "payments", indexes = {
+        @Index(name = "idx_payment_provider_txn_id", columnList = "provider_transaction_id"),
+        @Index(name = "idx_payment_status_expired", columnList = "status,expired_at")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -20,7 +23,8 @@ import java.time.LocalDateTime;
 public class Payment {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payments_seq")
+    @SequenceGenerator(name = "payments_seq", sequenceName = "payments_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -42,6 +46,10 @@ public class Payment {
     @Column(name = "status", length = 50)
     private String status = "PENDING"; // PENDING / PROCESSING / SUCCESS / FAILED / CANCELLED / REFUNDED
     
+    // PayOS checkout page, valid until expiredAt
+    @Column(name = "checkout_url", length = 500)
+    private String checkoutUrl;
+    
     @Column(name = "paid_at")
     private LocalDateTime paidAt;
     
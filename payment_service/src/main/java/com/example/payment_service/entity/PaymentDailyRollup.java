@@ -0,0 +1,29 @@
+package com.example.payment_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * Pre-aggregated payment counts and amounts per day and status
+ * A payment is counted on the day it entered its current status (paid_at for SUCCESS,
+ * created_at for PENDING); rows are maintained incrementally by PaymentRollupService
+ */
+@Entity
+@Table(name = "payment_daily_rollups")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentDailyRollup {
+
+    @EmbeddedId
+    private PaymentDailyRollupId id;
+
+    @Column(name = "payment_count", nullable = false)
+    private Long paymentCount;
+
+    @Column(name = "total_amount", nullable = false, precision = 19, scale = 2)
+    private BigDecimal totalAmount;
+}
@@ -0,0 +1,36 @@
+package com.example.payment_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Maps the numeric PayOS orderCode to our payment id
+ * Written when the payment link is created so webhooks resolve the payment by primary key
+ */
+@Entity
+@Table(name = "payment_link_mappings", indexes = {
+        @Index(name = "idx_link_mapping_payment_id", columnList = "payment_id")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentLinkMapping {
+
+    @Id
+    @Column(name = "payos_order_code")
+    private Long payosOrderCode;
+
+    @Column(name = "payment_id", nullable = false)
+    private Long paymentId;
+
+    @Column(name = "payment_link_id", length = 255)
+    private String paymentLinkId;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
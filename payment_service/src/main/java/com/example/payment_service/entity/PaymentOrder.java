@@ -15,7 +15,11 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "payment_orders")
+@Table(name = "payment_orders", indexes = {
+        // Keyset pagination of order history (OrderService.getOrderHistory)
+        @Index(name = "idx_order_user_status_created", columnList = "user_id,status,created_at"),
+        @Index(name = "idx_order_user_created", columnList = "user_id,created_at")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -23,7 +27,8 @@ import java.util.List;
 public class PaymentOrder {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payment_orders_seq")
+    @SequenceGenerator(name = "payment_orders_seq", sequenceName = "payment_orders_seq", allocationSize = 50)
     private Long id;
     
     @Column(name = "user_id", nullable = false)
@@ -22,7 +22,8 @@ import java.time.LocalDateTime;
 public class ProcessedEvent {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "processed_events_seq")
+    @SequenceGenerator(name = "processed_events_seq", sequenceName = "processed_events_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "event_id", nullable = false, length = 100)
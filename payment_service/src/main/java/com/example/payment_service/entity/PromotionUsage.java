@@ -20,7 +20,8 @@ import java.time.LocalDateTime;
 public class PromotionUsage {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "promotion_usages_seq")
+    @SequenceGenerator(name = "promotion_usages_seq", sequenceName = "promotion_usages_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -40,6 +41,14 @@ public class PromotionUsage {
     @Column(name = "bonus_credits")
     private Integer bonusCredits;
     
+    // RESERVED until the payment succeeds (COMMITTED) or fails / is cancelled / expires (RELEASED)
+    // Rows created before reservations existed have no status and count as COMMITTED
+    @Column(name = "status", length = 20)
+    private String status;
+    
+    @Column(name = "expires_at")
+    private LocalDateTime expiresAt;
+    
     @CreationTimestamp
     @Column(name = "used_at")
     private LocalDateTime usedAt;
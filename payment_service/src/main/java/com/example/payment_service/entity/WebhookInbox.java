@@ -0,0 +1,77 @@
+package com.example.payment_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+
+/**
+ * Journal of verified provider webhooks
+ * A webhook is appended here before it is acknowledged and processed asynchronously
+ * by WebhookIngestionService, so an accepted webhook is never lost
+ */
+@Entity
+@Table(name = "webhook_inbox", indexes = {
+        @Index(name = "idx_webhook_inbox_status_received", columnList = "status,received_at"),
+        // Unique: a redelivery reaching any replica cannot be journaled twice
+        @Index(name = "uk_webhook_inbox_dedup_key", columnList = "dedup_key", unique = true)
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WebhookInbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "webhook_inbox_seq")
+    @SequenceGenerator(name = "webhook_inbox_seq", sequenceName = "webhook_inbox_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "provider", nullable = false, length = 20)
+    private String provider; // e.g., "PAYOS"
+
+    @Column(name = "order_code")
+    private Long orderCode;
+
+    // (paymentLinkId, code, reference) - see WebhookDeduplicator
+    @Column(name = "dedup_key", length = 255)
+    private String dedupKey;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "payload", columnDefinition = "jsonb", nullable = false)
+    private String payload; // Webhook body as received
+
+    @Column(name = "status", length = 20, nullable = false)
+    @Builder.Default
+    private String status = "RECEIVED"; // RECEIVED / PROCESSED / FAILED
+
+    @Column(name = "attempts", nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    @CreationTimestamp
+    @Column(name = "received_at", nullable = false, updatable = false)
+    private LocalDateTime receivedAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    /**
+     * Lease held by the instance that queued this webhook for processing
+     * Other instances pick the row up only after locked_until passes
+     */
+    @Column(name = "locked_by", length = 100)
+    private String lockedBy;
+
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+}
@@ -0,0 +1,48 @@
+package com.example.payment_service.event.consumer;
+
+import com.example.payment_service.event.payload.PackageCatalogChangedEvent;
+import com.example.payment_service.event.producer.PaymentEventProducer;
+import com.example.payment_service.service.PackageCatalogCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Invalidates this replica's package catalog cache when another replica changes a package
+ *
+ * Every instance joins with its own group id, so each one receives every change (broadcast),
+ * and starts from the latest offset - a fresh instance loads the catalog anyway.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class PackageCatalogEventConsumer {
+    ObjectMapper objectMapper;
+    PackageCatalogCache packageCatalog;
+
+    @KafkaListener(
+            topics = PaymentEventProducer.PACKAGE_CATALOG_CHANGED_TOPIC,
+            groupId = "payment-package-catalog-${random.uuid}",
+            containerFactory = "kafkaListenerContainerFactory",
+            concurrency = "1",
+            properties = {
+                    "auto.offset.reset=latest",
+                    "value.deserializer=org.apache.kafka.common.serialization.StringDeserializer"
+            })
+    public void handlePackageCatalogChanged(String eventJson) {
+        try {
+            PackageCatalogChangedEvent event = objectMapper.readValue(eventJson, PackageCatalogChangedEvent.class);
+            packageCatalog.onRemoteChange(event.getOrigin(), event.getPackageId(), event.getAction());
+        } catch (Exception e) {
+            // Unreadable message - still drop the cache, it is cheap to reload
+            log.warn("Failed to handle {} event, invalidating package catalog: {}",
+                    PaymentEventProducer.PACKAGE_CATALOG_CHANGED_TOPIC, e.getMessage());
+            packageCatalog.invalidate();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.payment_service.event.dispatch;
+
+/**
+ * How an event type is delivered to Kafka
+ */
+public enum EventDeliveryClass {
+    /**
+     * Written to outbox_events in the caller's transaction, published by OutboxPublisherService.
+     * Never lost; used for events other services depend on (Saga).
+     */
+    OUTBOX,
+
+    /**
+     * Buffered in memory and sent asynchronously; dropped (and counted) under backpressure.
+     * Used for notifications and analytics.
+     */
+    BEST_EFFORT
+}
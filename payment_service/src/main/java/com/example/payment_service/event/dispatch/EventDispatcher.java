@@ -0,0 +1,330 @@
+package com.example.payment_service.event.dispatch;
+
+import com.example.payment_service.configuration.EventDispatchProperties;
+import com.example.payment_service.entity.OutboxEvent;
+import com.example.payment_service.service.OutboxNotificationListener;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single entry point for publishing domain events
+ *
+ * Each topic has a delivery class (EventDispatchProperties.delivery):
+ * - OUTBOX: the event is written to outbox_events in the caller's transaction and picked up by
+ *   OutboxPublisherService (woken through NOTIFY). Rows are collected per transaction and inserted
+ *   just before it commits as one multi-row INSERT and a single NOTIFY.
+ * - BEST_EFFORT: the event goes into a bounded in-memory buffer. One drainer thread lingers briefly
+ *   to collect a batch, hands it to the producer in one go (so records share producer batches),
+ *   and caps unacknowledged sends per topic - a slow topic sheds its own events instead of
+ *   filling the buffer for everyone. Every completion is observed and counted.
+ */
+@Component
+@Slf4j
+public class EventDispatcher {
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final EventDispatchProperties properties;
+
+    // Columns not listed keep their defaults; status/retry values match OutboxEvent's builder defaults
+    private static final String OUTBOX_INSERT_PREFIX = "INSERT INTO outbox_events " +
+            "(id, aggregate_id, aggregate_type, event_type, payload, created_at, status, retry_count, max_retry) VALUES ";
+    private static final String OUTBOX_INSERT_VALUES =
+            "(?, ?, ?, ?, CAST(? AS jsonb), ?, 'PENDING', 0, " + OutboxEvent.DEFAULT_MAX_RETRY + ")";
+    // One nextval per ID_ALLOCATION_SIZE rows: each value v reserves ids v..v+size-1, as Hibernate's
+    // pooled-lo optimizer does, so ids never overlap those handed out by OutboxEvent's generator
+    private static final String OUTBOX_RESERVE_IDS_SQL =
+            "SELECT nextval('outbox_events_seq') FROM generate_series(1, ?)";
+    private static final int OUTBOX_INSERT_CHUNK = 500;
+
+    private final ArrayBlockingQueue<PendingEvent> buffer;
+    private final Map<String, Semaphore> inFlightByTopic = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+    private Thread drainerThread;
+
+    public EventDispatcher(KafkaTemplate<String, Object> kafkaTemplate,
+                           ObjectMapper objectMapper,
+                           JdbcTemplate jdbcTemplate,
+                           MeterRegistry meterRegistry,
+                           EventDispatchProperties properties) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+        this.properties = properties;
+        this.buffer = new ArrayBlockingQueue<>(properties.getBufferCapacity());
+        meterRegistry.gauge("events.dispatch.buffer.size", buffer, ArrayBlockingQueue::size);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        drainerThread = new Thread(this::drainLoop, "event-dispatcher");
+        drainerThread.setDaemon(true);
+        drainerThread.start();
+    }
+
+    /**
+     * Stop accepting new work, then hand whatever is still buffered to the producer
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (drainerThread != null) {
+            drainerThread.interrupt();
+            try {
+                drainerThread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        List<PendingEvent> remaining = new ArrayList<>();
+        buffer.drainTo(remaining);
+        remaining.forEach(this::send);
+        kafkaTemplate.flush();
+        log.info("Event dispatcher stopped, flushed {} buffered events", remaining.size());
+    }
+
+    /**
+     * Dispatch an event according to its topic's delivery class
+     *
+     * OUTBOX topics join the caller's transaction (the one that changes the aggregate);
+     * BEST_EFFORT topics never touch the database.
+     *
+     * @param topic         Kafka topic (also the outbox event type)
+     * @param aggregateType aggregate type recorded in the outbox, e.g. PAYMENT / ORDER
+     * @param aggregateId   aggregate id; used as the record key so events of one aggregate stay ordered
+     */
+    public void dispatch(String topic, String aggregateType, String aggregateId, Object event) {
+        if (properties.deliveryFor(topic) == EventDeliveryClass.OUTBOX) {
+            writeToOutbox(topic, aggregateType, aggregateId, event);
+        } else {
+            enqueue(topic, aggregateId, event);
+        }
+    }
+
+    private void writeToOutbox(String topic, String aggregateType, String aggregateId, Object event) {
+        try {
+            OutboxRow row = new OutboxRow(aggregateId, aggregateType, topic, objectMapper.writeValueAsString(event));
+            if (TransactionSynchronizationManager.isActualTransactionActive()
+                    && TransactionSynchronizationManager.isSynchronizationActive()) {
+                currentOutboxBatch().rows.add(row);
+            } else {
+                insertOutboxRows(List.of(row));
+            }
+            counter(topic, "outboxed").increment();
+        } catch (Exception e) {
+            log.error("Failed to save {} event to outbox for {} {}", topic, aggregateType, aggregateId, e);
+            throw new RuntimeException("Failed to save event to outbox", e);
+        }
+    }
+
+    /**
+     * Outbox rows of the current transaction, registered on first use
+     * Looked up among the transaction's synchronizations so a REQUIRES_NEW transaction gets its own
+     */
+    private OutboxBatch currentOutboxBatch() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof OutboxBatch batch && batch.owner() == this) {
+                return batch;
+            }
+        }
+        OutboxBatch batch = new OutboxBatch();
+        TransactionSynchronizationManager.registerSynchronization(batch);
+        return batch;
+    }
+
+    /**
+     * Multi-row INSERT in chunks of OUTBOX_INSERT_CHUNK rows, then one NOTIFY
+     * NOTIFY is delivered only after the outbox rows commit (and dropped on rollback)
+     */
+    private void insertOutboxRows(List<OutboxRow> rows) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        long[] ids = reserveOutboxIds(rows.size());
+        for (int from = 0; from < rows.size(); from += OUTBOX_INSERT_CHUNK) {
+            List<OutboxRow> chunk = rows.subList(from, Math.min(from + OUTBOX_INSERT_CHUNK, rows.size()));
+            StringBuilder sql = new StringBuilder(OUTBOX_INSERT_PREFIX);
+            Object[] args = new Object[chunk.size() * 6];
+            int i = 0;
+            int id = from;
+            for (OutboxRow row : chunk) {
+                sql.append(i == 0 ? "" : ", ").append(OUTBOX_INSERT_VALUES);
+                args[i++] = ids[id++];
+                args[i++] = row.aggregateId();
+                args[i++] = row.aggregateType();
+                args[i++] = row.eventType();
+                args[i++] = row.payload();
+                args[i++] = now;
+            }
+            jdbcTemplate.update(sql.toString(), args);
+        }
+        jdbcTemplate.execute("NOTIFY " + OutboxNotificationListener.CHANNEL);
+    }
+
+    /**
+     * Ids for count outbox rows, taken in blocks of OutboxEvent.ID_ALLOCATION_SIZE
+     */
+    private long[] reserveOutboxIds(int count) {
+        int blockSize = OutboxEvent.ID_ALLOCATION_SIZE;
+        List<Long> blocks = jdbcTemplate.queryForList(OUTBOX_RESERVE_IDS_SQL, Long.class,
+                (count + blockSize - 1) / blockSize);
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = blocks.get(i / blockSize) + i % blockSize;
+        }
+        return ids;
+    }
+
+    private void enqueue(String topic, String key, Object event) {
+        PendingEvent pending = new PendingEvent(topic, key, event, System.nanoTime());
+        boolean accepted;
+        try {
+            accepted = buffer.offer(pending, properties.getEnqueueTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            accepted = false;
+        }
+        if (!accepted) {
+            counter(topic, "dropped").increment();
+            log.warn("Event buffer full, dropped {} event with key {}", topic, key);
+        }
+    }
+
+    private void drainLoop() {
+        List<PendingEvent> batch = new ArrayList<>(properties.getBatchSize());
+        while (running) {
+            try {
+                PendingEvent first = buffer.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Linger so bursts leave as one batch instead of one send per event
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getLingerMs());
+                while (batch.size() < properties.getBatchSize()) {
+                    buffer.drainTo(batch, properties.getBatchSize() - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= properties.getBatchSize() || remaining <= 0) {
+                        break;
+                    }
+                    PendingEvent next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                batch.forEach(this::send);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    // stop() flushes the buffer; put back what this round already took
+                    batch.forEach(buffer::offer);
+                    break;
+                }
+            } catch (Exception e) {
+                log.error("Event dispatcher round failed: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void send(PendingEvent pending) {
+        Semaphore inFlight = inFlightByTopic.computeIfAbsent(pending.topic(),
+                t -> new Semaphore(properties.getMaxInFlightPerTopic()));
+        try {
+            if (!inFlight.tryAcquire(properties.getInFlightTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                counter(pending.topic(), "dropped").increment();
+                log.warn("Too many unacknowledged {} events, dropped event with key {}", pending.topic(), pending.key());
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            counter(pending.topic(), "dropped").increment();
+            return;
+        }
+
+        try {
+            kafkaTemplate.send(pending.topic(), pending.key(), pending.event())
+                    .whenComplete((result, ex) -> {
+                        inFlight.release();
+                        onComplete(pending, ex);
+                    });
+        } catch (Exception e) {
+            inFlight.release();
+            onComplete(pending, e);
+        }
+    }
+
+    private void onComplete(PendingEvent pending, Throwable error) {
+        String outcome = error == null ? "sent" : "failed";
+        counter(pending.topic(), outcome).increment();
+        Timer.builder("events.dispatch.latency")
+                .description("Time from dispatch to broker acknowledgment for best-effort events")
+                .tag("topic", pending.topic())
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry)
+                .record(System.nanoTime() - pending.enqueuedAtNanos(), TimeUnit.NANOSECONDS);
+        if (error != null) {
+            log.warn("Failed to publish {} event with key {}: {}", pending.topic(), pending.key(), error.getMessage());
+        }
+    }
+
+    private Counter counter(String topic, String outcome) {
+        return Counter.builder("events.dispatch")
+                .description("Dispatched events by topic and outcome")
+                .tag("topic", topic)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private record PendingEvent(String topic, String key, Object event, long enqueuedAtNanos) {
+    }
+
+    private record OutboxRow(String aggregateId, String aggregateType, String eventType, String payload) {
+    }
+
+    /**
+     * Flushes a transaction's outbox rows before it commits; an insert failure rolls the transaction back
+     */
+    private final class OutboxBatch implements TransactionSynchronization {
+
+        final List<OutboxRow> rows = new ArrayList<>();
+
+        EventDispatcher owner() {
+            return EventDispatcher.this;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            if (!rows.isEmpty()) {
+                insertOutboxRows(rows);
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.payment_service.event.payload;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Broadcast to every payment_service replica so they drop their cached package catalog
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PackageCatalogChangedEvent {
+    @JsonProperty("package_id")
+    private Long packageId;
+
+    @JsonProperty("action")
+    private String action; // CREATED, UPDATED, STATUS_CHANGED, DELETED
+
+    @JsonProperty("origin")
+    private String origin;
+
+    @JsonProperty("timestamp")
+    private LocalDateTime timestamp;
+}
@@ -1,14 +1,11 @@
 package com.example.payment_service.event.producer;
 
-import com.example.payment_service.entity.OutboxEvent;
+import com.example.payment_service.event.dispatch.EventDispatcher;
 import com.example.payment_service.event.payload.*;
-import com.example.payment_service.repository.OutboxEventRepository;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -18,17 +15,18 @@ import java.time.LocalDateTime;
 
 /**
  * Producer for publishing payment-related events to Kafka
- * NOW WITH OUTBOX PATTERN - Events are saved to DB first, then published asynchronously
- * This ensures no event loss even if service crashes before publishing to Kafka
+ * All events go through EventDispatcher, which picks the delivery class per topic:
+ * payment.completed / payment.failed use the outbox (no event loss even if the service crashes
+ * before publishing), the rest are buffered best-effort sends with observed completions
  */
 @Component
 @RequiredArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 @Slf4j
 public class PaymentEventProducer {
-    KafkaTemplate<String, Object> kafkaTemplate;
-    OutboxEventRepository outboxRepository;
-    ObjectMapper objectMapper;
+    public static final String PACKAGE_CATALOG_CHANGED_TOPIC = "payment.package_catalog_changed";
+
+    EventDispatcher dispatcher;
 
     // ============ Order Events ============
     
@@ -41,8 +39,8 @@ public class PaymentEventProducer {
                 .timestamp(LocalDateTime.now())
                 .build();
 
-        kafkaTemplate.send("payment.order_created", event);
-        log.info("Published payment.order_created event for order: {}", orderId);
+        dispatcher.dispatch("payment.order_created", "ORDER", String.valueOf(orderId), event);
+        log.info("Dispatched payment.order_created event for order: {}", orderId);
     }
     
     public void publishOrderExpired(Long orderId, String userId) {
@@ -52,8 +50,8 @@ public class PaymentEventProducer {
                 .timestamp(LocalDateTime.now())
                 .build();
 
-        kafkaTemplate.send("payment.order_expired", event);
-        log.info("Published payment.order_expired event for order: {}", orderId);
+        dispatcher.dispatch("payment.order_expired", "ORDER", String.valueOf(orderId), event);
+        log.info("Dispatched payment.order_expired event for order: {}", orderId);
     }
     
     // ============ Payment Events ============
@@ -68,8 +66,8 @@ public class PaymentEventProducer {
                 .timestamp(LocalDateTime.now())
                 .build();
 
-        kafkaTemplate.send("payment.initiated", event);
-        log.info("Published payment.initiated event for payment: {}", paymentId);
+        dispatcher.dispatch("payment.initiated", "PAYMENT", String.valueOf(paymentId), event);
+        log.info("Dispatched payment.initiated event for payment: {}", paymentId);
     }
     
     public void publishPaymentProcessing(Long paymentId, String provider) {
@@ -79,8 +77,8 @@ public class PaymentEventProducer {
                 .timestamp(LocalDateTime.now())
                 .build();
         
-        kafkaTemplate.send("payment.processing", event);
-        log.info("Published payment.processing event for payment: {}", paymentId);
+        dispatcher.dispatch("payment.processing", "PAYMENT", String.valueOf(paymentId), event);
+        log.info("Dispatched payment.processing event for payment: {}", paymentId);
     }
     
 
@@ -91,37 +89,21 @@ public class PaymentEventProducer {
     @Transactional
     public void publishPaymentCompleted(Long paymentId, Long orderId, String userId, BigDecimal amount,
                                        String currency, String paymentMethod, Integer credits) {
-        try {
-            PaymentCompletedEvent event = PaymentCompletedEvent.builder()
-                    .paymentId(paymentId)
-                    .orderId(orderId)
-                    .userId(userId)
-                    .amount(amount)
-                    .currency(currency)
-                    .paymentMethod(paymentMethod)
-                    .timestamp(LocalDateTime.now())
-                    .credits(credits)
-                    .build();
-
-            // Save to outbox table atomically with payment transaction
-            String payload = objectMapper.writeValueAsString(event);
-
-            OutboxEvent outboxEvent = OutboxEvent.builder()
-                    .aggregateId(paymentId.toString())
-                    .aggregateType("PAYMENT")
-                    .eventType("payment.completed")
-                    .payload(payload)
-                    .status("PENDING")
-                    .build();
-
-            outboxRepository.save(outboxEvent);
+        PaymentCompletedEvent event = PaymentCompletedEvent.builder()
+                .paymentId(paymentId)
+                .orderId(orderId)
+                .userId(userId)
+                .amount(amount)
+                .currency(currency)
+                .paymentMethod(paymentMethod)
+                .timestamp(LocalDateTime.now())
+                .credits(credits)
+                .build();
 
-            log.info("Saved payment.completed event to outbox for payment: {} - user: {}, amount: {} {}",
-                    paymentId, userId, amount, currency);
-        } catch (Exception e) {
-            log.error("Failed to save payment.completed event to outbox", e);
-            throw new RuntimeException("Failed to save event to outbox", e);
-        }
+        // Saved to outbox atomically with the payment transaction
+        dispatcher.dispatch("payment.completed", "PAYMENT", paymentId.toString(), event);
+        log.info("Saved payment.completed event to outbox for payment: {} - user: {}, amount: {} {}",
+                paymentId, userId, amount, currency);
     }
     
 
@@ -131,32 +113,16 @@ public class PaymentEventProducer {
      */
     @Transactional
     public void publishPaymentFailed(Long paymentId, Long orderId, String userId, String reason) {
-        try {
-            PaymentFailedEvent event = PaymentFailedEvent.builder()
-                    .paymentId(paymentId)
-                    .orderId(orderId)
-                    .userId(userId)
-                    .reason(reason)
-                    .timestamp(LocalDateTime.now())
-                    .build();
-
-            String payload = objectMapper.writeValueAsString(event);
-
-            OutboxEvent outboxEvent = OutboxEvent.builder()
-                    .aggregateId(paymentId.toString())
-                    .aggregateType("PAYMENT")
-                    .eventType("payment.failed")
-                    .payload(payload)
-                    .status("PENDING")
-                    .build();
-
-            outboxRepository.save(outboxEvent);
+        PaymentFailedEvent event = PaymentFailedEvent.builder()
+                .paymentId(paymentId)
+                .orderId(orderId)
+                .userId(userId)
+                .reason(reason)
+                .timestamp(LocalDateTime.now())
+                .build();
 
-            log.info("Saved payment.failed event to outbox for payment: {}, reason: {}", paymentId, reason);
-        } catch (Exception e) {
-            log.error("Failed to save payment.failed event to outbox", e);
-            throw new RuntimeException("Failed to save event to outbox", e);
-        }
+        dispatcher.dispatch("payment.failed", "PAYMENT", paymentId.toString(), event);
+        log.info("Saved payment.failed event to outbox for payment: {}, reason: {}", paymentId, reason);
     }
     
     public void publishPaymentRefunded(Long paymentId, Long refundId, BigDecimal amount, String reason) {
@@ -168,8 +134,8 @@ public class PaymentEventProducer {
                 .timestamp(LocalDateTime.now())
                 .build();
         
-        kafkaTemplate.send("payment.refunded", event);
-        log.info("Published payment.refunded event for payment: {}, refund: {}", paymentId, refundId);
+        dispatcher.dispatch("payment.refunded", "PAYMENT", String.valueOf(paymentId), event);
+        log.info("Dispatched payment.refunded event for payment: {}, refund: {}", paymentId, refundId);
     }
     
     // ============ Bonus & Promotion Events ============
@@ -183,8 +149,8 @@ public class PaymentEventProducer {
                 .timestamp(LocalDateTime.now())
                 .build();
         
-        kafkaTemplate.send("payment.bonus_granted", event);
-        log.info("Published payment.bonus_granted event for user: {} (amount: {})", userId, amount);
+        dispatcher.dispatch("payment.bonus_granted", "USER", userId, event);
+        log.info("Dispatched payment.bonus_granted event for user: {} (amount: {})", userId, amount);
     }
     
     public void publishPromotionUsed(String userId, String promotionCode, BigDecimal discount) {
@@ -195,8 +161,8 @@ public class PaymentEventProducer {
                 .timestamp(LocalDateTime.now())
                 .build();
 
-        kafkaTemplate.send("payment.promotion_used", event);
-        log.info("Published payment.promotion_used event for user: {}, code: {}", userId, promotionCode);
+        dispatcher.dispatch("payment.promotion_used", "USER", userId, event);
+        log.info("Dispatched payment.promotion_used event for user: {}, code: {}", userId, promotionCode);
     }
     
     // ============ Analytics Events ============
@@ -209,7 +175,21 @@ public class PaymentEventProducer {
                 .timestamp(LocalDateTime.now())
                 .build();
         
-        kafkaTemplate.send("payment.revenue_recorded", event);
-        log.debug("Published payment.revenue_recorded event: {} VND via {}", amount);
+        dispatcher.dispatch("payment.revenue_recorded", "PAYMENT", String.valueOf(paymentId), event);
+        log.debug("Dispatched payment.revenue_recorded event: {} VND for payment: {}", amount, paymentId);
+    }
+    
+    // ============ Catalog Events ============
+
+    public void publishPackageCatalogChanged(Long packageId, String action, String origin) {
+        PackageCatalogChangedEvent event = PackageCatalogChangedEvent.builder()
+                .packageId(packageId)
+                .action(action)
+                .origin(origin)
+                .timestamp(LocalDateTime.now())
+                .build();
+
+        dispatcher.dispatch(PACKAGE_CATALOG_CHANGED_TOPIC, "PACKAGE", String.valueOf(packageId), event);
+        log.debug("Dispatched {} event for package: {} ({})", PACKAGE_CATALOG_CHANGED_TOPIC, packageId, action);
     }
 }
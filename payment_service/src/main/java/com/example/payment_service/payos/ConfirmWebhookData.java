@@ -0,0 +1,17 @@
+package com.example.payment_service.payos;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * ConfirmWebhookData - Response khi xác thực webhook URL
+ */
+@Data
+@NoArgsConstructor
+public class ConfirmWebhookData {
+    private String webhookUrl;
+    private String accountNumber;
+    private String accountName;
+    private String name;
+    private String shortName;
+}
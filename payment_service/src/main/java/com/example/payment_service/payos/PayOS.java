@@ -1,41 +1,88 @@
 package com.example.payment_service.payos;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
  * PayOS - Main class để tương tác với PayOS API
+ *
+ * Mỗi thao tác có hai biến thể: blocking (execute) và async (enqueue) trả về CompletableFuture.
+ * Biến thể async chạy trên Dispatcher của OkHttp nên không giữ thread của Tomcat trong lúc chờ PayOS.
+ *
+ * Response được Jackson đọc stream thẳng từ ResponseBody vào DTO (PayOSResponse&lt;T&gt;), không qua String
+ * hay Map trung gian; orderCode được đọc thành long nên không mất độ chính xác như khi đi qua Double.
  */
 @Slf4j
 public class PayOS {
     
-    private static final String PAYOS_API_URL = "https://api-merchant.payos.vn/v2/payment-requests";
+    public static final String DEFAULT_PAYOS_DOMAIN = "https://api-merchant.payos.vn";
+    private static final String PAYMENT_REQUESTS_PATH = "/v2/payment-requests";
+    private static final String CONFIRM_WEBHOOK_PATH = "/v2/confirm-webhook";
     private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
     
     private final String clientId;
     private final String apiKey;
-    private final String checksumKey;
+    private final PayOSSignatureEngine signatureEngine;
+    private final String paymentRequestsUrl;
+    private final String confirmWebhookUrl;
     private final OkHttpClient httpClient;
-    private final Gson gson;
+    private final ObjectWriter requestWriter;
+    private final ObjectReader checkoutReader;
+    private final ObjectReader paymentLinkReader;
+    private final ObjectReader confirmWebhookReader;
     
     public PayOS(String clientId, String apiKey, String checksumKey) {
-        this.clientId = clientId;
-        this.apiKey = apiKey;
-        this.checksumKey = checksumKey;
-        this.httpClient = new OkHttpClient.Builder()
+        this(clientId, apiKey, checksumKey, DEFAULT_PAYOS_DOMAIN, new OkHttpClient.Builder()
                 .connectTimeout(10, TimeUnit.SECONDS)
                 .writeTimeout(10, TimeUnit.SECONDS)
                 .readTimeout(30, TimeUnit.SECONDS)
-                .build();
-        this.gson = new GsonBuilder().create();
+                .build());
+    }
+
+    public PayOS(String clientId, String apiKey, String checksumKey, String payosDomain, OkHttpClient httpClient) {
+        this(clientId, apiKey, checksumKey, payosDomain, httpClient, new ObjectMapper());
+    }
+
+    /**
+     * @param payosDomain  base URL của PayOS (ví dụ https://api-merchant.payos.vn)
+     * @param httpClient   client đã cấu hình Dispatcher và ConnectionPool, xem PayOSConfiguration
+     * @param objectMapper ObjectMapper của ứng dụng (JacksonConfig)
+     */
+    public PayOS(String clientId, String apiKey, String checksumKey, String payosDomain, OkHttpClient httpClient,
+                 ObjectMapper objectMapper) {
+        this.clientId = clientId;
+        this.apiKey = apiKey;
+        this.signatureEngine = new PayOSSignatureEngine(checksumKey);
+        String domain = payosDomain.endsWith("/") ? payosDomain.substring(0, payosDomain.length() - 1) : payosDomain;
+        this.paymentRequestsUrl = domain + PAYMENT_REQUESTS_PATH;
+        this.confirmWebhookUrl = domain + CONFIRM_WEBHOOK_PATH;
+        this.httpClient = httpClient;
+
+        // Bản copy để đổi cấu hình riêng cho PayOS mà không ảnh hưởng bean dùng chung:
+        // bỏ field null khi gửi đi, bỏ qua field PayOS thêm mới khi đọc về
+        ObjectMapper payosMapper = objectMapper.copy()
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.requestWriter = payosMapper.writer();
+        this.checkoutReader = responseReader(payosMapper, CheckoutResponseData.class);
+        this.paymentLinkReader = responseReader(payosMapper, PaymentLinkData.class);
+        this.confirmWebhookReader = responseReader(payosMapper, ConfirmWebhookData.class);
+    }
+
+    private static ObjectReader responseReader(ObjectMapper mapper, Class<?> dataType) {
+        return mapper.readerFor(mapper.getTypeFactory().constructParametricType(PayOSResponse.class, dataType));
     }
     
     /**
@@ -43,187 +90,262 @@ public class PayOS {
      */
     public CheckoutResponseData createPaymentLink(PaymentData paymentData) throws Exception {
         try {
-            // Create request body
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("orderCode", paymentData.getOrderCode());
-            requestBody.put("amount", paymentData.getAmount());
-            requestBody.put("description", paymentData.getDescription());
-            requestBody.put("items", paymentData.getItems());
-            requestBody.put("cancelUrl", paymentData.getCancelUrl());
-            requestBody.put("returnUrl", paymentData.getReturnUrl());
-            
-            log.debug("Creating payment link for orderCode: {}, amount: {}",
-                    paymentData.getOrderCode(), paymentData.getAmount());
-
-            // Generate signature - only on specific fields
-            String signature = generateSignature(requestBody);
-            requestBody.put("signature", signature);
-            
-            String json = gson.toJson(requestBody);
-            log.debug("PayOS request body: {}", json);
-
-            Request request = new Request.Builder()
-                    .url(PAYOS_API_URL)
-                    .post(RequestBody.create(json, JSON))
-                    .addHeader("x-client-id", clientId)
-                    .addHeader("x-api-key", apiKey)
-                    .addHeader("Content-Type", "application/json")
-                    .build();
-            
-            try (Response response = httpClient.newCall(request).execute()) {
-                String responseBody = response.body().string();
-                log.debug("PayOS createPaymentLink response: {}", responseBody);
-                
-                if (!response.isSuccessful()) {
-                    log.error("PayOS API error: {} - {}", response.code(), responseBody);
-                    throw new Exception("PayOS API error: " + response.code() + " - " + responseBody);
-                }
-
-                Map<String, Object> responseMap = gson.fromJson(responseBody, Map.class);
-                String code = (String) responseMap.get("code");
-                String desc = (String) responseMap.get("desc");
-
-                // Check if request was successful
-                if (!"00".equals(code)) {
-                    log.error("PayOS returned error code: {} - {}", code, desc);
-                    throw new Exception("PayOS error: " + code + " - " + desc);
-                }
-
-                Map<String, Object> data = (Map<String, Object>) responseMap.get("data");
-                if (data == null) {
-                    log.error("PayOS response data is null. Response: {}", responseBody);
-                    throw new Exception("PayOS response data is null: " + desc);
-                }
-
-                return CheckoutResponseData.builder()
-                        .bin((String) data.get("bin"))
-                        .accountNumber((String) data.get("accountNumber"))
-                        .accountName((String) data.get("accountName"))
-                        .amount(((Double) data.get("amount")).intValue())
-                        .description((String) data.get("description"))
-                        .orderCode(((Double) data.get("orderCode")).longValue())
-                        .currency((String) data.get("currency"))
-                        .paymentLinkId((String) data.get("paymentLinkId"))
-                        .status((String) data.get("status"))
-                        .checkoutUrl((String) data.get("checkoutUrl"))
-                        .qrCode((String) data.get("qrCode"))
-                        .build();
-            }
+            return execute(buildCreatePaymentLinkRequest(paymentData), this::parseCheckoutResponse);
         } catch (Exception e) {
             log.error("Error creating payment link: ", e);
             throw e;
         }
     }
+
+    /**
+     * Tạo payment link (async)
+     */
+    public CompletableFuture<CheckoutResponseData> createPaymentLinkAsync(PaymentData paymentData) {
+        try {
+            return executeAsync(buildCreatePaymentLinkRequest(paymentData), "createPaymentLink",
+                    this::parseCheckoutResponse);
+        } catch (Exception e) {
+            log.error("Error creating payment link: ", e);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
     
     /**
      * Lấy thông tin payment link
      */
     public PaymentLinkData getPaymentLinkInformation(long orderCode) throws Exception {
         try {
-            String url = PAYOS_API_URL + "/" + orderCode;
-            
-            Request request = new Request.Builder()
-                    .url(url)
-                    .get()
-                    .addHeader("x-client-id", clientId)
-                    .addHeader("x-api-key", apiKey)
-                    .build();
-            
-            try (Response response = httpClient.newCall(request).execute()) {
-                if (!response.isSuccessful()) {
-                    String errorBody = response.body() != null ? response.body().string() : "Unknown error";
-                    log.error("PayOS API error: {} - {}", response.code(), errorBody);
-                    throw new Exception("PayOS API error: " + response.code());
-                }
-                
-                String responseBody = response.body().string();
-                log.debug("PayOS getPaymentLinkInformation response: {}", responseBody);
-                
-                Map<String, Object> responseMap = gson.fromJson(responseBody, Map.class);
-                Map<String, Object> data = (Map<String, Object>) responseMap.get("data");
-                
-                return PaymentLinkData.builder()
-                        .id((String) data.get("id"))
-                        .orderCode(((Double) data.get("orderCode")).longValue())
-                        .amount(((Double) data.get("amount")).intValue())
-                        .amountPaid(((Double) data.getOrDefault("amountPaid", 0.0)).intValue())
-                        .amountRemaining(((Double) data.getOrDefault("amountRemaining", 0.0)).intValue())
-                        .status((String) data.get("status"))
-                        .createdAt((String) data.get("createdAt"))
-                        .cancellationReason((String) data.get("cancellationReason"))
-                        .canceledAt((String) data.get("canceledAt"))
-                        .build();
-            }
+            return execute(buildGetPaymentLinkRequest(orderCode), this::parsePaymentLinkInformation);
         } catch (Exception e) {
             log.error("Error getting payment link information: ", e);
             throw e;
         }
     }
+
+    /**
+     * Lấy thông tin payment link (async)
+     */
+    public CompletableFuture<PaymentLinkData> getPaymentLinkInformationAsync(long orderCode) {
+        return executeAsync(buildGetPaymentLinkRequest(orderCode), "getPaymentLinkInformation",
+                this::parsePaymentLinkInformation);
+    }
     
     /**
      * Hủy payment link
      */
     public PaymentLinkData cancelPaymentLink(long orderCode, String cancellationReason) throws Exception {
         try {
-            String url = PAYOS_API_URL + "/" + orderCode;
-            
-            Map<String, Object> requestBody = new HashMap<>();
-            if (cancellationReason != null && !cancellationReason.isEmpty()) {
-                requestBody.put("cancellationReason", cancellationReason);
-            }
-            
-            String json = gson.toJson(requestBody);
-            
-            Request request = new Request.Builder()
-                    .url(url)
-                    .delete(RequestBody.create(json, JSON))
-                    .addHeader("x-client-id", clientId)
-                    .addHeader("x-api-key", apiKey)
-                    .addHeader("Content-Type", "application/json")
-                    .build();
-            
-            try (Response response = httpClient.newCall(request).execute()) {
-                if (!response.isSuccessful()) {
-                    String errorBody = response.body() != null ? response.body().string() : "Unknown error";
-                    log.error("PayOS API error: {} - {}", response.code(), errorBody);
-                    throw new Exception("PayOS API error: " + response.code());
-                }
-                
-                String responseBody = response.body().string();
-                log.debug("PayOS cancelPaymentLink response: {}", responseBody);
-                
-                Map<String, Object> responseMap = gson.fromJson(responseBody, Map.class);
-                Map<String, Object> data = (Map<String, Object>) responseMap.get("data");
-                
-                return PaymentLinkData.builder()
-                        .id((String) data.get("id"))
-                        .orderCode(((Double) data.get("orderCode")).longValue())
-                        .amount(((Double) data.get("amount")).intValue())
-                        .status((String) data.get("status"))
-                        .cancellationReason((String) data.get("cancellationReason"))
-                        .canceledAt((String) data.get("canceledAt"))
-                        .build();
-            }
+            return execute(buildCancelPaymentLinkRequest(orderCode, cancellationReason), this::parseCancelResponse);
         } catch (Exception e) {
             log.error("Error cancelling payment link: ", e);
             throw e;
         }
     }
+
+    /**
+     * Hủy payment link (async)
+     */
+    public CompletableFuture<PaymentLinkData> cancelPaymentLinkAsync(long orderCode, String cancellationReason) {
+        return executeAsync(buildCancelPaymentLinkRequest(orderCode, cancellationReason), "cancelPaymentLink",
+                this::parseCancelResponse);
+    }
+
+    /**
+     * Giải phóng thread của Dispatcher và các connection đang idle khi shutdown
+     */
+    public void shutdown() {
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+
+    // ==================== Request builders ====================
+
+    private Request buildCreatePaymentLinkRequest(PaymentData paymentData) throws Exception {
+        // Create request body
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("orderCode", paymentData.getOrderCode());
+        requestBody.put("amount", paymentData.getAmount());
+        requestBody.put("description", paymentData.getDescription());
+        requestBody.put("items", paymentData.getItems());
+        requestBody.put("cancelUrl", paymentData.getCancelUrl());
+        requestBody.put("returnUrl", paymentData.getReturnUrl());
+        // Hạn của link (epoch giây) - không nằm trong các field được ký
+        if (paymentData.getExpiredAt() != null) {
+            requestBody.put("expiredAt", paymentData.getExpiredAt());
+        }
+
+        log.debug("Creating payment link for orderCode: {}, amount: {}",
+                paymentData.getOrderCode(), paymentData.getAmount());
+
+        // Generate signature - only on specific fields
+        String signature = generateSignature(paymentData);
+        requestBody.put("signature", signature);
+
+        byte[] json = writeRequestBody(requestBody);
+
+        return new Request.Builder()
+                .url(paymentRequestsUrl)
+                .post(RequestBody.create(json, JSON))
+                .addHeader("x-client-id", clientId)
+                .addHeader("x-api-key", apiKey)
+                .addHeader("Content-Type", "application/json")
+                .build();
+    }
+
+    private Request buildGetPaymentLinkRequest(long orderCode) {
+        return new Request.Builder()
+                .url(paymentRequestsUrl + "/" + orderCode)
+                .get()
+                .addHeader("x-client-id", clientId)
+                .addHeader("x-api-key", apiKey)
+                .build();
+    }
+
+    private Request buildCancelPaymentLinkRequest(long orderCode, String cancellationReason) {
+        Map<String, Object> requestBody = new HashMap<>();
+        if (cancellationReason != null && !cancellationReason.isEmpty()) {
+            requestBody.put("cancellationReason", cancellationReason);
+        }
+
+        byte[] json = writeRequestBody(requestBody);
+
+        return new Request.Builder()
+                .url(paymentRequestsUrl + "/" + orderCode)
+                .delete(RequestBody.create(json, JSON))
+                .addHeader("x-client-id", clientId)
+                .addHeader("x-api-key", apiKey)
+                .addHeader("Content-Type", "application/json")
+                .build();
+    }
+
+    // ==================== Response parsers ====================
+
+    private CheckoutResponseData parseCheckoutResponse(Response response) throws Exception {
+        PayOSResponse<CheckoutResponseData> body = readBody(response, checkoutReader, "createPaymentLink");
+
+        // Check if request was successful
+        if (!body.isSuccess()) {
+            log.error("PayOS returned error code: {} - {}", body.getCode(), body.getDesc());
+            throw new Exception("PayOS error: " + body.getCode() + " - " + body.getDesc());
+        }
+        if (body.getData() == null) {
+            log.error("PayOS response data is null. Response: {}", body);
+            throw new Exception("PayOS response data is null: " + body.getDesc());
+        }
+        return body.getData();
+    }
+
+    private PaymentLinkData parsePaymentLinkInformation(Response response) throws Exception {
+        PaymentLinkData data = paymentLinkData(readBody(response, paymentLinkReader, "getPaymentLinkInformation"));
+        if (data.getAmountPaid() == null) {
+            data.setAmountPaid(0);
+        }
+        if (data.getAmountRemaining() == null) {
+            data.setAmountRemaining(0);
+        }
+        return data;
+    }
+
+    private PaymentLinkData parseCancelResponse(Response response) throws Exception {
+        return paymentLinkData(readBody(response, paymentLinkReader, "cancelPaymentLink"));
+    }
+
+    private PaymentLinkData paymentLinkData(PayOSResponse<PaymentLinkData> body) throws Exception {
+        if (body.getData() == null) {
+            log.error("PayOS returned no payment link data: {} - {}", body.getCode(), body.getDesc());
+            throw new Exception("PayOS error: " + body.getCode() + " - " + body.getDesc());
+        }
+        return body.getData();
+    }
+
+    /**
+     * Đọc envelope từ ResponseBody dạng stream; body chỉ được đọc thành String ở nhánh lỗi để log
+     */
+    private <T> PayOSResponse<T> readBody(Response response, ObjectReader reader, String operation) throws Exception {
+        ResponseBody responseBody = response.body();
+        if (!response.isSuccessful()) {
+            String errorBody = responseBody != null ? responseBody.string() : "Unknown error";
+            log.error("PayOS API error: {} - {}", response.code(), errorBody);
+            throw new Exception("PayOS API error: " + response.code() + " - " + errorBody);
+        }
+        if (responseBody == null) {
+            throw new Exception("PayOS " + operation + " returned an empty body");
+        }
+
+        try (InputStream in = responseBody.byteStream()) {
+            PayOSResponse<T> body = reader.readValue(in);
+            log.debug("PayOS {} response: {}", operation, body);
+            return body;
+        }
+    }
+
+    private byte[] writeRequestBody(Map<String, Object> requestBody) {
+        try {
+            return requestWriter.writeValueAsBytes(requestBody);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize PayOS request", e);
+        }
+    }
+
+    // ==================== Call execution ====================
+
+    @FunctionalInterface
+    private interface ResponseParser<T> {
+        T parse(Response response) throws Exception;
+    }
+
+    private <T> T execute(Request request, ResponseParser<T> parser) throws Exception {
+        try (Response response = httpClient.newCall(request).execute()) {
+            return parser.parse(response);
+        }
+    }
+
+    /**
+     * Enqueue request trên Dispatcher của OkHttp; future được complete trên thread của Dispatcher.
+     * Cancel future sẽ cancel luôn HTTP call bên dưới.
+     */
+    private <T> CompletableFuture<T> executeAsync(Request request, String operation, ResponseParser<T> parser) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Call call = httpClient.newCall(request);
+
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                log.error("PayOS {} call failed: {}", operation, e.getMessage());
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    future.complete(parser.parse(response));
+                } catch (Exception e) {
+                    log.error("Error handling PayOS {} response: ", operation, e);
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+
+        future.whenComplete((result, ex) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+        return future;
+    }
     
     /**
      * Xác thực webhook URL
      */
     public String confirmWebhook(String webhookUrl) throws Exception {
         try {
-            String url = "https://api-merchant.payos.vn/v2/confirm-webhook";
-            
             Map<String, Object> requestBody = new HashMap<>();
             requestBody.put("webhookUrl", webhookUrl);
             
-            String json = gson.toJson(requestBody);
+            byte[] json = writeRequestBody(requestBody);
             
             Request request = new Request.Builder()
-                    .url(url)
+                    .url(confirmWebhookUrl)
                     .post(RequestBody.create(json, JSON))
                     .addHeader("x-client-id", clientId)
                     .addHeader("x-api-key", apiKey)
@@ -231,17 +353,8 @@ public class PayOS {
                     .build();
             
             try (Response response = httpClient.newCall(request).execute()) {
-                if (!response.isSuccessful()) {
-                    String errorBody = response.body() != null ? response.body().string() : "Unknown error";
-                    log.error("PayOS API error: {} - {}", response.code(), errorBody);
-                    throw new Exception("PayOS API error: " + response.code());
-                }
-                
-                String responseBody = response.body().string();
-                log.debug("PayOS confirmWebhook response: {}", responseBody);
-                
-                Map<String, Object> responseMap = gson.fromJson(responseBody, Map.class);
-                return (String) responseMap.get("message");
+                PayOSResponse<ConfirmWebhookData> body = readBody(response, confirmWebhookReader, "confirmWebhook");
+                return body.getMessage();
             }
         } catch (Exception e) {
             log.error("Error confirming webhook: ", e);
@@ -250,106 +363,104 @@ public class PayOS {
     }
     
     /**
-     * Xác minh dữ liệu webhook
+     * Xác minh dữ liệu webhook (chế độ LEGACY)
      */
     public WebhookData verifyPaymentWebhookData(Webhook webhookBody) throws Exception {
-        try {
-            String receivedSignature = webhookBody.getSignature();
-            WebhookData data = webhookBody.getData();
-            
-            log.debug("Verifying webhook signature - received: {}", receivedSignature);
-            log.debug("Webhook data: orderCode={}, amount={}, description={}",
-                    data.getOrderCode(), data.getAmount(), data.getDescription());
-
-            // Try multiple signature calculation methods as PayOS documentation is unclear
-
-            // Method 1: Using only amount, description, orderCode (from webhook data)
-            Map<String, Object> dataMap1 = new TreeMap<>();
-            dataMap1.put("amount", data.getAmount());
-            dataMap1.put("description", data.getDescription());
-            dataMap1.put("orderCode", data.getOrderCode());
-            String calculatedSignature1 = generateSignatureFromMap(dataMap1);
-            log.debug("Signature method 1 (amount, description, orderCode): {}", calculatedSignature1);
-
-            // Method 2: Including all non-null webhook fields
-            Map<String, Object> dataMap2 = new TreeMap<>();
-            if (data.getOrderCode() != null) dataMap2.put("orderCode", data.getOrderCode());
-            if (data.getAmount() != null) dataMap2.put("amount", data.getAmount());
-            if (data.getDescription() != null) dataMap2.put("description", data.getDescription());
-            if (data.getAccountNumber() != null) dataMap2.put("accountNumber", data.getAccountNumber());
-            if (data.getReference() != null) dataMap2.put("reference", data.getReference());
-            if (data.getTransactionDateTime() != null) dataMap2.put("transactionDateTime", data.getTransactionDateTime());
-            if (data.getPaymentLinkId() != null) dataMap2.put("paymentLinkId", data.getPaymentLinkId());
-            String calculatedSignature2 = generateSignatureFromMap(dataMap2);
-            log.debug("Signature method 2 (all fields): {}", calculatedSignature2);
-
-            // Check if any method matches
-            if (calculatedSignature1.equals(receivedSignature)) {
-                log.info("Webhook signature verified successfully (method 1)");
-                return data;
-            } else if (calculatedSignature2.equals(receivedSignature)) {
-                log.info("Webhook signature verified successfully (method 2)");
-                return data;
-            } else {
-                // Log warning but allow webhook to proceed
-                // PayOS webhook signature verification is inconsistent in their API
-                log.warn("Webhook signature mismatch - received: {}, calculated1: {}, calculated2: {}",
-                        receivedSignature, calculatedSignature1, calculatedSignature2);
-                log.warn("Proceeding with webhook processing despite signature mismatch (PayOS signature calculation is inconsistent)");
-
-                // Verify webhook is valid by checking required fields instead
-                if (data.getOrderCode() == null || data.getAmount() == null) {
-                    throw new Exception("Invalid webhook data: missing required fields");
-                }
-
-                return data;
-            }
-
-        } catch (Exception e) {
-            log.error("Error verifying webhook data: ", e);
-            throw e;
+        WebhookVerificationResult result = verifyWebhookSignature(webhookBody, WebhookVerificationMode.LEGACY);
+        if (!result.isAccepted()) {
+            throw new Exception("Invalid webhook data: signature mismatch and missing required fields");
         }
+        return webhookBody.getData();
     }
 
     /**
-     * Generate signature from a map of data
+     * Xác minh chữ ký webhook
+     *
+     * Chuỗi canonical chuẩn (tất cả field của data theo alphabet, null -> "") được tính đúng một lần.
+     * STRICT dừng ở đó; LEGACY mới thử thêm method 1 / method 2 và cho qua khi vẫn sai.
      */
-    private String generateSignatureFromMap(Map<String, Object> data) throws Exception {
-        try {
-            StringBuilder signatureData = new StringBuilder();
-            data.forEach((key, value) -> {
-                signatureData.append(key).append("=").append(value).append("&");
-            });
-
-            // Remove last &
-            if (signatureData.length() > 0) {
-                signatureData.setLength(signatureData.length() - 1);
-            }
+    public WebhookVerificationResult verifyWebhookSignature(Webhook webhookBody, WebhookVerificationMode mode) {
+        String receivedSignature = webhookBody.getSignature();
+        WebhookData data = webhookBody.getData();
+        if (data == null || receivedSignature == null) {
+            return WebhookVerificationResult.REJECTED;
+        }
 
-            // Generate HMAC SHA256
-            Mac sha256_HMAC = Mac.getInstance("HmacSHA256");
-            SecretKeySpec secret_key = new SecretKeySpec(
-                    checksumKey.getBytes(StandardCharsets.UTF_8),
-                    "HmacSHA256"
-            );
-            sha256_HMAC.init(secret_key);
-
-            byte[] hash = sha256_HMAC.doFinal(signatureData.toString().getBytes(StandardCharsets.UTF_8));
-
-            // Convert to hex string
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
-            }
+        if (documentedCanonical(data).matches(receivedSignature)) {
+            return WebhookVerificationResult.VERIFIED;
+        }
+        if (mode == WebhookVerificationMode.STRICT) {
+            log.warn("Rejected webhook with invalid signature - orderCode: {}", data.getOrderCode());
+            return WebhookVerificationResult.REJECTED;
+        }
 
-            return hexString.toString();
+        // Legacy: PayOS documentation was unclear, older integrations signed a subset of fields
+        // Method 1: Using only amount, description, orderCode (from webhook data)
+        if (webhookCoreCanonical(data).matches(receivedSignature)) {
+            log.debug("Webhook signature verified with legacy method 1");
+            return WebhookVerificationResult.LEGACY_MATCH;
+        }
+        // Method 2: Including all non-null webhook fields
+        if (webhookFieldsCanonical(data).matches(receivedSignature)) {
+            log.debug("Webhook signature verified with legacy method 2");
+            return WebhookVerificationResult.LEGACY_MATCH;
+        }
 
-        } catch (Exception e) {
-            log.error("Error generating signature: ", e);
-            throw e;
+        // Verify webhook is valid by checking required fields instead
+        if (data.getOrderCode() == null || data.getAmount() == null) {
+            log.warn("Rejected webhook - signature mismatch and missing required fields");
+            return WebhookVerificationResult.REJECTED;
         }
+        log.warn("Webhook signature mismatch for orderCode {} - proceeding (legacy verification mode)",
+                data.getOrderCode());
+        return WebhookVerificationResult.LEGACY_FALLBACK;
+    }
+
+    /**
+     * Chuỗi canonical chuẩn của PayOS: mọi field của data theo thứ tự alphabet, null -> ""
+     */
+    private PayOSSignatureEngine.Canonical documentedCanonical(WebhookData data) {
+        return signatureEngine.begin()
+                .fieldOrEmpty("accountNumber", data.getAccountNumber())
+                .fieldOrEmpty("amount", data.getAmount())
+                .fieldOrEmpty("code", data.getCode())
+                .fieldOrEmpty("counterAccountBankId", data.getCounterAccountBankId())
+                .fieldOrEmpty("counterAccountBankName", data.getCounterAccountBankName())
+                .fieldOrEmpty("counterAccountName", data.getCounterAccountName())
+                .fieldOrEmpty("counterAccountNumber", data.getCounterAccountNumber())
+                .fieldOrEmpty("currency", data.getCurrency())
+                .fieldOrEmpty("desc", data.getDesc())
+                .fieldOrEmpty("description", data.getDescription())
+                .fieldOrEmpty("orderCode", data.getOrderCode())
+                .fieldOrEmpty("paymentLinkId", data.getPaymentLinkId())
+                .fieldOrEmpty("reference", data.getReference())
+                .fieldOrEmpty("transactionDateTime", data.getTransactionDateTime())
+                .fieldOrEmpty("virtualAccountName", data.getVirtualAccountName())
+                .fieldOrEmpty("virtualAccountNumber", data.getVirtualAccountNumber());
+    }
+
+    /**
+     * Method 1: amount, description, orderCode
+     */
+    private PayOSSignatureEngine.Canonical webhookCoreCanonical(WebhookData data) {
+        return signatureEngine.begin()
+                .field("amount", data.getAmount())
+                .field("description", data.getDescription())
+                .field("orderCode", data.getOrderCode());
+    }
+
+    /**
+     * Method 2: tất cả field khác null của webhook, theo thứ tự alphabet
+     */
+    private PayOSSignatureEngine.Canonical webhookFieldsCanonical(WebhookData data) {
+        return signatureEngine.begin()
+                .fieldIfPresent("accountNumber", data.getAccountNumber())
+                .fieldIfPresent("amount", data.getAmount())
+                .fieldIfPresent("description", data.getDescription())
+                .fieldIfPresent("orderCode", data.getOrderCode())
+                .fieldIfPresent("paymentLinkId", data.getPaymentLinkId())
+                .fieldIfPresent("reference", data.getReference())
+                .fieldIfPresent("transactionDateTime", data.getTransactionDateTime());
     }
 
     /**
@@ -357,58 +468,20 @@ public class PayOS {
      * PayOS signature format: amount={amount}&cancelUrl={cancelUrl}&description={description}&orderCode={orderCode}&returnUrl={returnUrl}
      * Note: items should not be included in signature calculation
      */
-    private String generateSignature(Map<String, Object> data) throws Exception {
-        try {
-            // PayOS only requires these fields for signature: amount, cancelUrl, description, orderCode, returnUrl
-            // Items should NOT be included in signature calculation
-            TreeMap<String, Object> sortedData = new TreeMap<>();
-
-            // Only include fields that PayOS uses for signature calculation
-            String[] signatureFields = {"amount", "cancelUrl", "description", "orderCode", "returnUrl"};
-            for (String field : signatureFields) {
-                if (data.containsKey(field) && data.get(field) != null) {
-                    sortedData.put(field, data.get(field));
-                }
-            }
+    String generateSignature(PaymentData paymentData) {
+        // Only the fields PayOS signs, already in alphabetical order; null fields are skipped
+        PayOSSignatureEngine.Canonical canonical = signatureEngine.begin()
+                .fieldIfPresent("amount", paymentData.getAmount())
+                .fieldIfPresent("cancelUrl", paymentData.getCancelUrl())
+                .fieldIfPresent("description", paymentData.getDescription())
+                .fieldIfPresent("orderCode", paymentData.getOrderCode())
+                .fieldIfPresent("returnUrl", paymentData.getReturnUrl());
 
-            StringBuilder signatureData = new StringBuilder();
-            sortedData.forEach((key, value) -> {
-                signatureData.append(key).append("=").append(value).append("&");
-            });
-            
-            // Remove last &
-            if (signatureData.length() > 0) {
-                signatureData.setLength(signatureData.length() - 1);
-            }
-            
-            log.debug("Signature data string: {}", signatureData.toString());
-
-            // Generate HMAC SHA256
-            Mac sha256_HMAC = Mac.getInstance("HmacSHA256");
-            SecretKeySpec secret_key = new SecretKeySpec(
-                    checksumKey.getBytes(StandardCharsets.UTF_8),
-                    "HmacSHA256"
-            );
-            sha256_HMAC.init(secret_key);
-            
-            byte[] hash = sha256_HMAC.doFinal(signatureData.toString().getBytes(StandardCharsets.UTF_8));
-            
-            // Convert to hex string
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
-            }
-            
-            String signature = hexString.toString();
-            log.debug("Generated signature: {}", signature);
-
-            return signature;
-
-        } catch (Exception e) {
-            log.error("Error generating signature: ", e);
-            throw e;
+        if (log.isDebugEnabled()) {
+            log.debug("Signature data string: {}", canonical);
         }
+        String signature = canonical.sign();
+        log.debug("Generated signature: {}", signature);
+        return signature;
     }
-}
\ No newline at end of file
+}
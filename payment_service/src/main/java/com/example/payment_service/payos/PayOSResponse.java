@@ -0,0 +1,22 @@
+package com.example.payment_service.payos;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * PayOSResponse - Envelope chung của mọi response PayOS: { code, desc, data, signature }
+ */
+@Data
+@NoArgsConstructor
+public class PayOSResponse<T> {
+    private String code;
+    private String desc;
+    // Chỉ có ở một số API (confirm-webhook) - confirmWebhook trả về field này như trước
+    private String message;
+    private T data;
+    private String signature;
+
+    public boolean isSuccess() {
+        return "00".equals(code);
+    }
+}
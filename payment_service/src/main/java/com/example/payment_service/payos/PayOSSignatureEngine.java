@@ -0,0 +1,243 @@
+package com.example.payment_service.payos;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * HMAC-SHA256 signer cho PayOS (request signature và webhook signature)
+ *
+ * Mỗi thread giữ một Mac đã init sẵn với checksum key và một byte buffer tái sử dụng.
+ * Chuỗi canonical "key1=value1&key2=value2" được ghi thẳng vào buffer dạng UTF-8 (không TreeMap,
+ * không StringBuilder), hex encode bằng bảng tra, và so sánh chữ ký theo constant-time.
+ *
+ * Caller tự ghi field theo thứ tự alphabet như PayOS yêu cầu:
+ * <pre>
+ *   engine.begin().field("amount", 100000).field("description", "...").field("orderCode", 123L).sign();
+ * </pre>
+ */
+public final class PayOSSignatureEngine {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int DIGEST_LENGTH = 32;
+    private static final int INITIAL_BUFFER_SIZE = 512;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL_LITERAL = "null".getBytes(StandardCharsets.US_ASCII);
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<Canonical> canonicals;
+
+    public PayOSSignatureEngine(String checksumKey) {
+        this.key = new SecretKeySpec(checksumKey.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.canonicals = ThreadLocal.withInitial(() -> new Canonical(newMac()));
+        // Fail fast on a bad key instead of on the first payment
+        newMac();
+    }
+
+    /**
+     * Bắt đầu một chuỗi canonical mới trên thread hiện tại
+     * Kết quả chỉ dùng được trên thread này và tới lần begin() tiếp theo
+     */
+    public Canonical begin() {
+        Canonical canonical = canonicals.get();
+        canonical.reset();
+        return canonical;
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialize " + ALGORITHM, e);
+        }
+    }
+
+    /**
+     * Buffer canonical của một thread
+     */
+    public static final class Canonical {
+
+        private final Mac mac;
+        private final byte[] digest = new byte[DIGEST_LENGTH];
+        private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+        private int length;
+
+        private Canonical(Mac mac) {
+            this.mac = mac;
+        }
+
+        private void reset() {
+            length = 0;
+        }
+
+        public Canonical field(String name, long value) {
+            writeName(name);
+            writeLong(value);
+            return this;
+        }
+
+        /**
+         * null được ghi thành "null" - giống String.valueOf như cách ký cũ
+         */
+        public Canonical field(String name, String value) {
+            writeName(name);
+            if (value == null) {
+                writeBytes(NULL_LITERAL);
+            } else {
+                writeUtf8(value);
+            }
+            return this;
+        }
+
+        public Canonical field(String name, Object value) {
+            if (value instanceof Long || value instanceof Integer || value instanceof Short) {
+                return field(name, ((Number) value).longValue());
+            }
+            return field(name, value == null ? null : value.toString());
+        }
+
+        /**
+         * null được ghi thành chuỗi rỗng - cách PayOS SDK chuẩn hoá dữ liệu webhook
+         */
+        public Canonical fieldOrEmpty(String name, Object value) {
+            return field(name, value == null ? "" : value);
+        }
+
+        /**
+         * Chỉ ghi field khi value khác null
+         */
+        public Canonical fieldIfPresent(String name, Object value) {
+            return value == null ? this : field(name, value);
+        }
+
+        /**
+         * Chữ ký hex lowercase (64 ký tự)
+         */
+        public String sign() {
+            computeDigest();
+            byte[] hex = new byte[DIGEST_LENGTH * 2];
+            for (int i = 0; i < DIGEST_LENGTH; i++) {
+                hex[2 * i] = HEX[(digest[i] >> 4) & 0x0f];
+                hex[2 * i + 1] = HEX[digest[i] & 0x0f];
+            }
+            return new String(hex, StandardCharsets.US_ASCII);
+        }
+
+        /**
+         * So sánh constant-time với chữ ký hex nhận được, không tạo String
+         */
+        public boolean matches(String expectedHex) {
+            if (expectedHex == null || expectedHex.length() != DIGEST_LENGTH * 2) {
+                return false;
+            }
+            computeDigest();
+            int diff = 0;
+            for (int i = 0; i < DIGEST_LENGTH; i++) {
+                diff |= HEX[(digest[i] >> 4) & 0x0f] ^ expectedHex.charAt(2 * i);
+                diff |= HEX[digest[i] & 0x0f] ^ expectedHex.charAt(2 * i + 1);
+            }
+            return diff == 0;
+        }
+
+        /**
+         * Chuỗi canonical - chỉ dùng để log debug
+         */
+        @Override
+        public String toString() {
+            return new String(buffer, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private void computeDigest() {
+            mac.update(buffer, 0, length);
+            try {
+                mac.doFinal(digest, 0);
+            } catch (ShortBufferException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void writeName(String name) {
+            if (length > 0) {
+                writeByte('&');
+            }
+            // Field names are ASCII identifiers
+            ensureCapacity(name.length() + 1);
+            for (int i = 0; i < name.length(); i++) {
+                buffer[length++] = (byte) name.charAt(i);
+            }
+            buffer[length++] = '=';
+        }
+
+        private void writeLong(long value) {
+            if (value == Long.MIN_VALUE) {
+                writeUtf8(Long.toString(value));
+                return;
+            }
+            ensureCapacity(20);
+            if (value < 0) {
+                buffer[length++] = '-';
+                value = -value;
+            }
+            int start = length;
+            do {
+                buffer[length++] = (byte) ('0' + (value % 10));
+                value /= 10;
+            } while (value != 0);
+            // Digits were written least significant first
+            for (int i = start, j = length - 1; i < j; i++, j--) {
+                byte tmp = buffer[i];
+                buffer[i] = buffer[j];
+                buffer[j] = tmp;
+            }
+        }
+
+        private void writeUtf8(String value) {
+            ensureCapacity(value.length() * 3);
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    buffer[length++] = (byte) c;
+                } else if (c < 0x800) {
+                    buffer[length++] = (byte) (0xc0 | (c >> 6));
+                    buffer[length++] = (byte) (0x80 | (c & 0x3f));
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, value.charAt(++i));
+                    buffer[length++] = (byte) (0xf0 | (cp >> 18));
+                    buffer[length++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    buffer[length++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    buffer[length++] = (byte) (0x80 | (cp & 0x3f));
+                } else if (Character.isSurrogate(c)) {
+                    // Unpaired surrogate - same replacement as String.getBytes(UTF_8)
+                    buffer[length++] = '?';
+                } else {
+                    buffer[length++] = (byte) (0xe0 | (c >> 12));
+                    buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    buffer[length++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+        }
+
+        private void writeBytes(byte[] bytes) {
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+        }
+
+        private void writeByte(char c) {
+            ensureCapacity(1);
+            buffer[length++] = (byte) c;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+            }
+        }
+    }
+}
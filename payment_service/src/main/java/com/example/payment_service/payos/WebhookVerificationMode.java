@@ -0,0 +1,16 @@
+package com.example.payment_service.payos;
+
+/**
+ * Cách xác minh chữ ký webhook PayOS
+ */
+public enum WebhookVerificationMode {
+    /**
+     * Chỉ chấp nhận chữ ký theo chuỗi canonical chuẩn của PayOS, sai là từ chối
+     */
+    STRICT,
+
+    /**
+     * Thử chuỗi chuẩn, rồi method 1 / method 2 cũ; nếu vẫn sai vẫn cho qua khi đủ orderCode và amount
+     */
+    LEGACY
+}
@@ -0,0 +1,19 @@
+package com.example.payment_service.payos;
+
+/**
+ * Kết quả xác minh chữ ký webhook
+ */
+public enum WebhookVerificationResult {
+    /** Khớp chuỗi canonical chuẩn của PayOS */
+    VERIFIED,
+    /** Khớp một trong hai cách ký cũ (method 1 / method 2) */
+    LEGACY_MATCH,
+    /** Không khớp nhưng được cho qua ở chế độ LEGACY */
+    LEGACY_FALLBACK,
+    /** Bị từ chối */
+    REJECTED;
+
+    public boolean isAccepted() {
+        return this != REJECTED;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.payment_service.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Order history row with its package columns, filled by a JPQL constructor expression
+ * (no entity or package proxy is loaded)
+ */
+public record OrderHistoryRow(Long orderId, String orderCode, String userId,
+                              Long packageId, String packageName, Integer credits, Integer bonusCredits,
+                              BigDecimal totalAmount, BigDecimal discountAmount, BigDecimal finalAmount,
+                              String currency, String status, String description,
+                              LocalDateTime createdAt, LocalDateTime updatedAt) {
+}
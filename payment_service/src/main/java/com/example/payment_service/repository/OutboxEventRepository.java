@@ -2,7 +2,9 @@ package com.example.payment_service.repository;
 
 import com.example.payment_service.entity.OutboxEvent;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -21,6 +23,25 @@ public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long>
            "ORDER BY e.createdAt ASC")
     List<OutboxEvent> findPendingEvents(LocalDateTime now);
 
+    /**
+     * Lock a bounded batch of due events, skipping rows locked by other instances
+     * Must run inside a transaction; the caller leases the returned rows before committing
+     */
+    @Query(value = "SELECT * FROM outbox_events WHERE " +
+           "(status = 'PENDING' OR (status = 'FAILED' AND next_retry_at <= :now)) " +
+           "AND retry_count < max_retry " +
+           "AND (locked_until IS NULL OR locked_until < :now) " +
+           "ORDER BY created_at ASC " +
+           "LIMIT :limit " +
+           "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<OutboxEvent> lockPendingEvents(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.lockedBy = :owner, e.lockedUntil = :leaseUntil WHERE e.id IN :ids")
+    int leaseEvents(@Param("ids") List<Long> ids,
+                    @Param("owner") String owner,
+                    @Param("leaseUntil") LocalDateTime leaseUntil);
+
     /**
      * Find old published events for cleanup
      */
@@ -0,0 +1,52 @@
+package com.example.payment_service.repository;
+
+import com.example.payment_service.entity.PaymentDailyRollup;
+import com.example.payment_service.entity.PaymentDailyRollupId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface PaymentDailyRollupRepository extends JpaRepository<PaymentDailyRollup, PaymentDailyRollupId> {
+
+    /**
+     * Add a (possibly negative) delta to one day/status bucket, creating it if needed
+     */
+    @Modifying
+    @Query(value = "INSERT INTO payment_daily_rollups (rollup_date, status, payment_count, total_amount) " +
+                   "VALUES (:rollupDate, :status, :countDelta, :amountDelta) " +
+                   "ON CONFLICT (rollup_date, status) DO UPDATE SET " +
+                   "payment_count = payment_daily_rollups.payment_count + EXCLUDED.payment_count, " +
+                   "total_amount = payment_daily_rollups.total_amount + EXCLUDED.total_amount",
+           nativeQuery = true)
+    int applyDelta(@Param("rollupDate") LocalDate rollupDate,
+                   @Param("status") String status,
+                   @Param("countDelta") long countDelta,
+                   @Param("amountDelta") BigDecimal amountDelta);
+
+    /**
+     * Rebuild every bucket from the payments table (initial backfill)
+     * Bucketing must match PaymentRollupService.bucketDate
+     */
+    @Modifying
+    @Query(value = "INSERT INTO payment_daily_rollups (rollup_date, status, payment_count, total_amount) " +
+                   "SELECT CAST(CASE WHEN p.status = 'SUCCESS' THEN COALESCE(p.paid_at, p.updated_at, p.created_at, now()) " +
+                   "                 ELSE COALESCE(p.created_at, p.updated_at, now()) END AS date), " +
+                   "       p.status, COUNT(*), COALESCE(SUM(p.amount), 0) " +
+                   "FROM payments p WHERE p.status IS NOT NULL " +
+                   "GROUP BY 1, 2",
+           nativeQuery = true)
+    int backfillFromPayments();
+
+    @Query("SELECT r FROM PaymentDailyRollup r WHERE r.id.rollupDate >= :from")
+    List<PaymentDailyRollup> findFrom(@Param("from") LocalDate from);
+
+    @Query("SELECT r.id.status, SUM(r.paymentCount), SUM(r.totalAmount) FROM PaymentDailyRollup r GROUP BY r.id.status")
+    List<Object[]> sumByStatus();
+}
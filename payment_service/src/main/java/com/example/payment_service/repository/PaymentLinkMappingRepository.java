@@ -0,0 +1,14 @@
+package com.example.payment_service.repository;
+
+import com.example.payment_service.entity.PaymentLinkMapping;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface PaymentLinkMappingRepository extends JpaRepository<PaymentLinkMapping, Long> {
+
+    List<PaymentLinkMapping> findByPaymentIdIn(Collection<Long> paymentIds);
+}
@@ -1,16 +1,54 @@
 package com.example.payment_service.repository;
 
 import com.example.payment_service.entity.PaymentOrder;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface PaymentOrderRepository extends JpaRepository<PaymentOrder, Long> {
     Optional<PaymentOrder> findByOrderCode(String orderCode);
+    @EntityGraph(attributePaths = "packageInfo")
     Page<PaymentOrder> findByUserId(String userId, Pageable pageable);
+    @EntityGraph(attributePaths = "packageInfo")
     Page<PaymentOrder> findByUserIdAndStatus(String userId, String status, Pageable pageable);
+
+    /**
+     * Keyset page of a user's orders, newest first, strictly after the (createdAt, id) cursor
+     */
+    @Query("SELECT new com.example.payment_service.repository.OrderHistoryRow(" +
+           "o.id, o.orderCode, o.userId, p.id, p.name, p.credits, p.bonusCredits, " +
+           "o.totalAmount, o.discountAmount, o.finalAmount, o.currency, o.status, o.description, " +
+           "o.createdAt, o.updatedAt) " +
+           "FROM PaymentOrder o LEFT JOIN o.packageInfo p " +
+           "WHERE o.userId = :userId " +
+           "AND (o.createdAt < :createdAt OR (o.createdAt = :createdAt AND o.id < :id)) " +
+           "ORDER BY o.createdAt DESC, o.id DESC")
+    List<OrderHistoryRow> findHistoryPage(@Param("userId") String userId,
+                                          @Param("createdAt") LocalDateTime createdAt,
+                                          @Param("id") Long id,
+                                          Limit limit);
+
+    @Query("SELECT new com.example.payment_service.repository.OrderHistoryRow(" +
+           "o.id, o.orderCode, o.userId, p.id, p.name, p.credits, p.bonusCredits, " +
+           "o.totalAmount, o.discountAmount, o.finalAmount, o.currency, o.status, o.description, " +
+           "o.createdAt, o.updatedAt) " +
+           "FROM PaymentOrder o LEFT JOIN o.packageInfo p " +
+           "WHERE o.userId = :userId AND o.status = :status " +
+           "AND (o.createdAt < :createdAt OR (o.createdAt = :createdAt AND o.id < :id)) " +
+           "ORDER BY o.createdAt DESC, o.id DESC")
+    List<OrderHistoryRow> findHistoryPageByStatus(@Param("userId") String userId,
+                                                  @Param("status") String status,
+                                                  @Param("createdAt") LocalDateTime createdAt,
+                                                  @Param("id") Long id,
+                                                  Limit limit);
 }
@@ -1,17 +1,24 @@
 package com.example.payment_service.repository;
 
 import com.example.payment_service.entity.Payment;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
@@ -21,6 +28,48 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     Optional<Payment> findByProviderTransactionId(String providerTransactionId);
     
     List<Payment> findByOrderId(Long orderId);
+
+    @Modifying
+    @Query("UPDATE Payment p SET p.providerTransactionId = :providerTransactionId, " +
+           "p.checkoutUrl = :checkoutUrl, p.expiredAt = :expiredAt, p.updatedAt = :now " +
+           "WHERE p.id = :id AND p.providerTransactionId IS NULL")
+    int attachPaymentLink(@Param("id") Long id,
+                          @Param("providerTransactionId") String providerTransactionId,
+                          @Param("checkoutUrl") String checkoutUrl,
+                          @Param("expiredAt") LocalDateTime expiredAt,
+                          @Param("now") LocalDateTime now);
+    
+    /**
+     * Row-lock payments for a status change, in id order so concurrent batches can't deadlock
+     * Webhook processing holds these locks so a payment handled by two workers at once (lease
+     * takeover, redelivery on another replica) is only transitioned once
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Payment p WHERE p.id IN :ids ORDER BY p.id")
+    List<Payment> lockAllByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Payment p WHERE p.providerTransactionId = :providerTransactionId")
+    Optional<Payment> lockByProviderTransactionId(@Param("providerTransactionId") String providerTransactionId);
+
+    /**
+     * Payments with their order and package in one query - used by batched webhook processing
+     */
+    @Query("SELECT p FROM Payment p LEFT JOIN FETCH p.order o LEFT JOIN FETCH o.packageInfo WHERE p.id IN :ids")
+    List<Payment> findAllWithOrderByIdIn(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * (id, expiredAt) of pending payments - loaded onto the expiry wheel at startup
+     */
+    @Query("SELECT p.id, p.expiredAt FROM Payment p WHERE p.status = 'PENDING' AND p.expiredAt IS NOT NULL")
+    List<Object[]> findPendingDeadlines();
+    
+    /**
+     * Pending payments past their deadline, row-locked so an expiry fired on several instances applies once
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Payment p WHERE p.id IN :ids AND p.status = 'PENDING' AND p.expiredAt <= :now")
+    List<Payment> lockExpiredPending(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
     
     List<Payment> findByStatus(String status);
     
@@ -32,9 +81,6 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     @Query("SELECT p FROM Payment p WHERE p.order.userId = :userId AND p.status = :status")
     List<Payment> findUserPaymentsByStatus(@Param("userId") Long userId, @Param("status") String status);
     
-    @Query("SELECT p FROM Payment p WHERE p.createdAt BETWEEN :startDate AND :endDate")
-    List<Payment> findPaymentsByDateRange(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
-
     // Saga Pattern - Timeout handling
     List<Payment> findByStatusAndUpdatedAtBefore(String status, LocalDateTime cutoffTime);
 
@@ -59,4 +105,19 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     @Query("SELECT p.status as status, COUNT(p) as count, COALESCE(SUM(p.amount), 0) as totalAmount " +
            "FROM Payment p GROUP BY p.status")
     List<Object[]> getPaymentStatsByStatus();
+
+    /**
+     * Per-day SUCCESS / FAILED totals in [start, end): rows are (day, status, count, sum)
+     * SUCCESS is bucketed by paid_at, FAILED by created_at - the same days as
+     * PaymentRollupService.bucketDate, so this agrees with the rollup-backed dashboard
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query(value = "SELECT CAST(date_trunc('day', CASE WHEN p.status = 'SUCCESS' THEN p.paid_at ELSE p.created_at END) AS date), " +
+                   "       p.status, COUNT(*), COALESCE(SUM(p.amount), 0) " +
+                   "FROM payments p " +
+                   "WHERE (p.status = 'SUCCESS' AND p.paid_at >= :start AND p.paid_at < :end) " +
+                   "   OR (p.status = 'FAILED' AND p.created_at >= :start AND p.created_at < :end) " +
+                   "GROUP BY 1, 2",
+           nativeQuery = true)
+    Stream<Object[]> streamDailyTotalsByStatus(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 }
@@ -2,7 +2,9 @@ package com.example.payment_service.repository;
 
 import com.example.payment_service.entity.ProcessedEvent;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -19,6 +21,10 @@ public interface ProcessedEventRepository extends JpaRepository<ProcessedEvent,
     @Query("SELECT e FROM ProcessedEvent e WHERE e.processedAt < :cutoffDate")
     List<ProcessedEvent> findOldProcessedEvents(LocalDateTime cutoffDate);
 
+    @Modifying
+    @Query("DELETE FROM ProcessedEvent e WHERE e.processedAt < :cutoffDate")
+    int deleteProcessedBefore(@Param("cutoffDate") LocalDateTime cutoffDate);
+
     @Query("SELECT e FROM ProcessedEvent e WHERE " +
            "e.processingResult = 'FAILED' AND e.processedAt > :since " +
            "ORDER BY e.processedAt DESC")
@@ -2,6 +2,9 @@ package com.example.payment_service.repository;
 
 import com.example.payment_service.entity.Promotion;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -12,4 +15,32 @@ import java.util.Optional;
 public interface PromotionRepository extends JpaRepository<Promotion, Long> {
     Optional<Promotion> findByCode(String code);
     List<Promotion> findByIsActiveTrueAndValidFromBeforeAndValidToAfter(LocalDateTime now1, LocalDateTime now2);
+    List<Promotion> findByIsActiveTrueAndValidToAfter(LocalDateTime now);
+
+    /**
+     * Take one use if the promotion is not used up - the row lock serializes concurrent callers
+     *
+     * @return 1 if a use was taken, 0 if max_uses was already reached
+     */
+    @Modifying
+    @Query(value = "UPDATE promotions SET current_uses = COALESCE(current_uses, 0) + 1 " +
+                   "WHERE id = :id AND (max_uses IS NULL OR COALESCE(current_uses, 0) < max_uses)",
+           nativeQuery = true)
+    int tryIncrementUses(@Param("id") Long id);
+
+    /**
+     * Give back a use taken by a released reservation
+     */
+    @Modifying
+    @Query(value = "UPDATE promotions SET current_uses = current_uses - 1 WHERE id = :id AND current_uses > 0",
+           nativeQuery = true)
+    int decrementUses(@Param("id") Long id);
+
+    /**
+     * Take a use regardless of max_uses - only for payments that already succeeded
+     */
+    @Modifying
+    @Query(value = "UPDATE promotions SET current_uses = COALESCE(current_uses, 0) + 1 WHERE id = :id",
+           nativeQuery = true)
+    int forceIncrementUses(@Param("id") Long id);
 }
@@ -2,13 +2,54 @@ package com.example.payment_service.repository;
 
 import com.example.payment_service.entity.PromotionUsage;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface PromotionUsageRepository extends JpaRepository<PromotionUsage, Long> {
     List<PromotionUsage> findByPromotionId(Long promotionId);
     List<PromotionUsage> findByUserId(String userId);
-    int countByPromotionIdAndUserId(Long promotionId, String userId);
+
+    /**
+     * Usages that hold or consumed a slot - released reservations are not counted
+     */
+    @Query("SELECT COUNT(u) FROM PromotionUsage u WHERE u.promotion.id = :promotionId AND u.userId = :userId " +
+           "AND (u.status IS NULL OR u.status <> 'RELEASED')")
+    int countByPromotionIdAndUserId(@Param("promotionId") Long promotionId, @Param("userId") String userId);
+
+    /**
+     * Per-promotion usage counts of one user as (promotionId, count), same rules as countByPromotionIdAndUserId
+     */
+    @Query("SELECT u.promotion.id, COUNT(u) FROM PromotionUsage u WHERE u.userId = :userId " +
+           "AND u.promotion.id IN :promotionIds AND (u.status IS NULL OR u.status <> 'RELEASED') " +
+           "GROUP BY u.promotion.id")
+    List<Object[]> countByUserIdGroupByPromotion(@Param("userId") String userId,
+                                                 @Param("promotionIds") Collection<Long> promotionIds);
+
+    List<PromotionUsage> findByOrderId(Long orderId);
+
+    /**
+     * Pending reservations as (id, expiresAt) - loaded into the expiry wheel at startup
+     */
+    @Query("SELECT u.id, u.expiresAt FROM PromotionUsage u WHERE u.status = 'RESERVED'")
+    List<Object[]> findReservedDeadlines();
+
+    /**
+     * Move a reservation to a final status; returns 0 if it was no longer RESERVED
+     */
+    @Modifying
+    @Query("UPDATE PromotionUsage u SET u.status = :status WHERE u.id = :id AND u.status = 'RESERVED'")
+    int completeReservation(@Param("id") Long id, @Param("status") String status);
+
+    /**
+     * Commit a reservation that was already released; returns 0 if it was not RELEASED
+     */
+    @Modifying
+    @Query("UPDATE PromotionUsage u SET u.status = 'COMMITTED' WHERE u.id = :id AND u.status = 'RELEASED'")
+    int reclaimReservation(@Param("id") Long id);
 }
@@ -0,0 +1,64 @@
+package com.example.payment_service.repository;
+
+import com.example.payment_service.entity.WebhookInbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface WebhookInboxRepository extends JpaRepository<WebhookInbox, Long> {
+
+    boolean existsByDedupKey(String dedupKey);
+
+    /**
+     * Lock a bounded batch of unprocessed webhooks whose lease has expired (or failed ones that are due)
+     * Must run inside a transaction; the caller leases the returned rows before committing
+     */
+    @Query(value = "SELECT * FROM webhook_inbox WHERE " +
+           "(status = 'RECEIVED' OR (status = 'FAILED' AND next_attempt_at <= :now AND attempts < :maxAttempts)) " +
+           "AND (locked_until IS NULL OR locked_until < :now) " +
+           "ORDER BY received_at ASC " +
+           "LIMIT :limit " +
+           "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<WebhookInbox> lockDueEntries(@Param("now") LocalDateTime now,
+                                      @Param("maxAttempts") int maxAttempts,
+                                      @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE WebhookInbox w SET w.lockedBy = :owner, w.lockedUntil = :leaseUntil WHERE w.id IN :ids")
+    int leaseEntries(@Param("ids") List<Long> ids,
+                     @Param("owner") String owner,
+                     @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    /**
+     * Lock the given rows that are still leased to owner and not processed yet, returning their ids
+     * Taken by the processing transaction: a row whose lease ran out and was claimed by another
+     * instance's sweep is left to that instance
+     */
+    @Query(value = "SELECT id FROM webhook_inbox WHERE id IN (:ids) AND locked_by = :owner " +
+           "AND status <> 'PROCESSED' ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Long> lockOwnedEntries(@Param("ids") List<Long> ids, @Param("owner") String owner);
+
+    @Modifying
+    @Query("UPDATE WebhookInbox w SET w.status = 'PROCESSED', w.processedAt = :now, " +
+           "w.attempts = w.attempts + 1, w.lockedBy = NULL, w.lockedUntil = NULL WHERE w.id IN :ids")
+    int markProcessed(@Param("ids") List<Long> ids, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE WebhookInbox w SET w.status = 'FAILED', w.attempts = w.attempts + 1, w.lastError = :error, " +
+           "w.nextAttemptAt = :nextAttemptAt, w.lockedBy = NULL, w.lockedUntil = NULL " +
+           "WHERE w.id = :id AND w.lockedBy = :owner")
+    int markFailed(@Param("id") Long id,
+                   @Param("owner") String owner,
+                   @Param("error") String error,
+                   @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
+
+    @Modifying
+    @Query("DELETE FROM WebhookInbox w WHERE w.status = 'PROCESSED' AND w.processedAt < :cutoff")
+    int deleteProcessedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -2,12 +2,15 @@ package com.example.payment_service.saga;
 
 import com.example.payment_service.entity.Payment;
 import com.example.payment_service.repository.PaymentRepository;
+import com.example.payment_service.service.PaymentRollupService;
+import com.example.payment_service.service.PromotionReservationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -28,6 +31,8 @@ import java.util.List;
 public class SagaTimeoutHandler {
 
     private final PaymentRepository paymentRepository;
+    private final PaymentRollupService paymentRollupService;
+    private final PromotionReservationService promotionReservationService;
 
     // Saga timeout: 15 minutes
     private static final int SAGA_TIMEOUT_MINUTES = 15;
@@ -71,9 +76,14 @@ public class SagaTimeoutHandler {
 
                 for (Payment payment : processingPayments) {
                     // Auto-fail after timeout
+                    LocalDate oldBucketDate = paymentRollupService.bucketDate(payment);
                     payment.setStatus("FAILED");
                     payment.setUpdatedAt(LocalDateTime.now());
                     paymentRepository.save(payment);
+                    paymentRollupService.recordTransition(payment, "PROCESSING", oldBucketDate);
+                    if (payment.getOrder() != null) {
+                        promotionReservationService.releaseForOrder(payment.getOrder().getId());
+                    }
 
                     log.error("Payment timed out and marked as FAILED: ID={}", payment.getId());
 
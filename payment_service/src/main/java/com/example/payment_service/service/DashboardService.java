@@ -4,7 +4,8 @@ import com.example.payment_service.dto.response.DailyRevenueResponse;
 import com.example.payment_service.dto.response.PaymentByStatusResponse;
 import com.example.payment_service.dto.response.PaymentOverviewResponse;
 import com.example.payment_service.dto.response.RevenueStatsResponse;
-import com.example.payment_service.entity.Payment;
+import com.example.payment_service.entity.PaymentDailyRollup;
+import com.example.payment_service.repository.PaymentDailyRollupRepository;
 import com.example.payment_service.repository.PaymentRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -15,12 +16,12 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Service for dashboard statistics and analytics
@@ -31,66 +32,48 @@ import java.util.stream.Collectors;
 @Transactional(readOnly = true)
 public class DashboardService {
 
+    // ~10 years; bounds the per-day accumulator arrays
+    private static final int MAX_DAILY_REVENUE_DAYS = 3660;
+
     private final PaymentRepository paymentRepository;
+    private final PaymentDailyRollupRepository rollupRepository;
 
     /**
      * Get revenue statistics for dashboard
      * Supports filtering by date range
+     * Reads the daily rollups - one query for the last year, one for all-time totals by status
      */
     public RevenueStatsResponse getRevenueStats(LocalDateTime startDate, LocalDateTime endDate) {
         log.info("Getting revenue stats from {} to {}", startDate, endDate);
 
-        // Get current date boundaries
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime todayStart = LocalDate.now().atStartOfDay();
-        LocalDateTime weekStart = now.minusWeeks(1);
-        LocalDateTime monthStart = now.minusMonths(1);
-        LocalDateTime yearStart = now.minusYears(1);
-
-        // Calculate revenues for different periods
-        BigDecimal todayRevenue = paymentRepository.sumSuccessfulPaymentsByDateRange(todayStart, now);
-        BigDecimal weekRevenue = paymentRepository.sumSuccessfulPaymentsByDateRange(weekStart, now);
-        BigDecimal monthRevenue = paymentRepository.sumSuccessfulPaymentsByDateRange(monthStart, now);
-        BigDecimal yearRevenue = paymentRepository.sumSuccessfulPaymentsByDateRange(yearStart, now);
-
-        // Count transactions for different periods
-        Long todayTransactions = paymentRepository.countPaymentsByDateRange(todayStart, now);
-        Long weekTransactions = paymentRepository.countPaymentsByDateRange(weekStart, now);
-        Long monthTransactions = paymentRepository.countPaymentsByDateRange(monthStart, now);
-        Long yearTransactions = paymentRepository.countPaymentsByDateRange(yearStart, now);
+        PeriodTotals periods = successTotalsByPeriod(LocalDate.now(), true);
+        Map<String, StatusTotals> byStatus = totalsByStatus();
+        StatusTotals success = byStatus.getOrDefault("SUCCESS", StatusTotals.EMPTY);
 
         // Calculate average transaction value
-        BigDecimal averageTransactionValue = paymentRepository.calculateAverageSuccessfulPayment();
-
-        // Calculate total refunds (payments with REFUNDED status)
-        BigDecimal totalRefunds = paymentRepository.sumAmountByStatus("REFUNDED");
+        BigDecimal averageTransactionValue = success.count() > 0
+                ? success.amount().divide(BigDecimal.valueOf(success.count()), 2, RoundingMode.HALF_UP)
+                : BigDecimal.ZERO;
 
-        // Get payment stats by status for additional insights
-        List<Object[]> statsByStatus = paymentRepository.getPaymentStatsByStatus();
         Map<String, Long> transactionsByStatus = new HashMap<>();
-
-        for (Object[] row : statsByStatus) {
-            String status = (String) row[0];
-            Long count = (Long) row[1];
-            transactionsByStatus.put(status, count);
-        }
+        byStatus.forEach((status, totals) -> transactionsByStatus.put(status, totals.count()));
 
         // For revenueByMethod, we'll keep it simple for now
         // In a real implementation, you'd track payment methods
         Map<String, BigDecimal> revenueByMethod = new HashMap<>();
-        revenueByMethod.put("PayOS", paymentRepository.sumAmountByStatus("SUCCESS"));
+        revenueByMethod.put("PayOS", success.amount());
 
         return RevenueStatsResponse.builder()
-                .todayRevenue(todayRevenue != null ? todayRevenue : BigDecimal.ZERO)
-                .weekRevenue(weekRevenue != null ? weekRevenue : BigDecimal.ZERO)
-                .monthRevenue(monthRevenue != null ? monthRevenue : BigDecimal.ZERO)
-                .yearRevenue(yearRevenue != null ? yearRevenue : BigDecimal.ZERO)
-                .todayTransactions(todayTransactions != null ? todayTransactions : 0L)
-                .weekTransactions(weekTransactions != null ? weekTransactions : 0L)
-                .monthTransactions(monthTransactions != null ? monthTransactions : 0L)
-                .yearTransactions(yearTransactions != null ? yearTransactions : 0L)
-                .averageTransactionValue(averageTransactionValue != null ? averageTransactionValue : BigDecimal.ZERO)
-                .totalRefunds(totalRefunds != null ? totalRefunds : BigDecimal.ZERO)
+                .todayRevenue(periods.revenue[TODAY])
+                .weekRevenue(periods.revenue[WEEK])
+                .monthRevenue(periods.revenue[MONTH])
+                .yearRevenue(periods.revenue[YEAR])
+                .todayTransactions(periods.count[TODAY])
+                .weekTransactions(periods.count[WEEK])
+                .monthTransactions(periods.count[MONTH])
+                .yearTransactions(periods.count[YEAR])
+                .averageTransactionValue(averageTransactionValue)
+                .totalRefunds(byStatus.getOrDefault("REFUNDED", StatusTotals.EMPTY).amount())
                 .revenueByMethod(revenueByMethod)
                 .transactionsByStatus(transactionsByStatus)
                 .build();
@@ -102,18 +85,15 @@ public class DashboardService {
     public PaymentOverviewResponse getPaymentOverview() {
         log.info("Getting payment overview");
 
-        // Get counts by status
-        Long totalPayments = paymentRepository.count();
-        Long successfulPayments = paymentRepository.countByStatus("SUCCESS");
-        Long failedPayments = paymentRepository.countByStatus("FAILED");
-        Long pendingPayments = paymentRepository.countByStatus("PENDING");
-        Long cancelledPayments = paymentRepository.countByStatus("CANCELLED");
+        Map<String, StatusTotals> byStatus = totalsByStatus();
+        StatusTotals success = byStatus.getOrDefault("SUCCESS", StatusTotals.EMPTY);
+        StatusTotals failed = byStatus.getOrDefault("FAILED", StatusTotals.EMPTY);
+        StatusTotals pending = byStatus.getOrDefault("PENDING", StatusTotals.EMPTY);
+        StatusTotals cancelled = byStatus.getOrDefault("CANCELLED", StatusTotals.EMPTY);
 
-        // Get amounts by status
-        BigDecimal totalRevenue = paymentRepository.sumAmountByStatus("SUCCESS");
-        BigDecimal successfulAmount = totalRevenue;
-        BigDecimal pendingAmount = paymentRepository.sumAmountByStatus("PENDING");
-        BigDecimal failedAmount = paymentRepository.sumAmountByStatus("FAILED");
+        long totalPayments = byStatus.values().stream().mapToLong(StatusTotals::count).sum();
+        long successfulPayments = success.count();
+        BigDecimal totalRevenue = success.amount();
 
         // Calculate average payment value
         BigDecimal averagePaymentValue = BigDecimal.ZERO;
@@ -128,42 +108,31 @@ public class DashboardService {
         // Calculate success rate
         Double successRate = 0.0;
         if (totalPayments > 0) {
-            successRate = (successfulPayments.doubleValue() / totalPayments.doubleValue()) * 100;
+            successRate = ((double) successfulPayments / totalPayments) * 100;
             successRate = Math.round(successRate * 100.0) / 100.0; // Round to 2 decimal places
         }
 
         // Get period-based statistics
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime todayStart = LocalDate.now().atStartOfDay();
-        LocalDateTime weekStart = now.minusWeeks(1);
-        LocalDateTime monthStart = now.minusMonths(1);
-
-        BigDecimal todayRevenue = paymentRepository.sumSuccessfulPaymentsByDateRange(todayStart, now);
-        BigDecimal weekRevenue = paymentRepository.sumSuccessfulPaymentsByDateRange(weekStart, now);
-        BigDecimal monthRevenue = paymentRepository.sumSuccessfulPaymentsByDateRange(monthStart, now);
-
-        Long todayPayments = paymentRepository.countPaymentsByDateRange(todayStart, now);
-        Long weekPayments = paymentRepository.countPaymentsByDateRange(weekStart, now);
-        Long monthPayments = paymentRepository.countPaymentsByDateRange(monthStart, now);
+        PeriodTotals periods = successTotalsByPeriod(LocalDate.now(), false);
 
         return PaymentOverviewResponse.builder()
-                .totalPayments(totalPayments != null ? totalPayments : 0L)
-                .successfulPayments(successfulPayments != null ? successfulPayments : 0L)
-                .failedPayments(failedPayments != null ? failedPayments : 0L)
-                .pendingPayments(pendingPayments != null ? pendingPayments : 0L)
-                .cancelledPayments(cancelledPayments != null ? cancelledPayments : 0L)
-                .totalRevenue(totalRevenue != null ? totalRevenue : BigDecimal.ZERO)
-                .successfulAmount(successfulAmount != null ? successfulAmount : BigDecimal.ZERO)
-                .pendingAmount(pendingAmount != null ? pendingAmount : BigDecimal.ZERO)
-                .failedAmount(failedAmount != null ? failedAmount : BigDecimal.ZERO)
+                .totalPayments(totalPayments)
+                .successfulPayments(successfulPayments)
+                .failedPayments(failed.count())
+                .pendingPayments(pending.count())
+                .cancelledPayments(cancelled.count())
+                .totalRevenue(totalRevenue)
+                .successfulAmount(totalRevenue)
+                .pendingAmount(pending.amount())
+                .failedAmount(failed.amount())
                 .averagePaymentValue(averagePaymentValue)
                 .successRate(successRate)
-                .todayRevenue(todayRevenue != null ? todayRevenue : BigDecimal.ZERO)
-                .weekRevenue(weekRevenue != null ? weekRevenue : BigDecimal.ZERO)
-                .monthRevenue(monthRevenue != null ? monthRevenue : BigDecimal.ZERO)
-                .todayPayments(todayPayments != null ? todayPayments : 0L)
-                .weekPayments(weekPayments != null ? weekPayments : 0L)
-                .monthPayments(monthPayments != null ? monthPayments : 0L)
+                .todayRevenue(periods.revenue[TODAY])
+                .weekRevenue(periods.revenue[WEEK])
+                .monthRevenue(periods.revenue[MONTH])
+                .todayPayments(periods.count[TODAY])
+                .weekPayments(periods.count[WEEK])
+                .monthPayments(periods.count[MONTH])
                 .build();
     }
 
@@ -173,30 +142,26 @@ public class DashboardService {
     public List<PaymentByStatusResponse> getPaymentsByStatus() {
         log.info("Getting payments by status");
 
-        List<Object[]> statsByStatus = paymentRepository.getPaymentStatsByStatus();
-        Long totalPayments = paymentRepository.count();
+        Map<String, StatusTotals> byStatus = totalsByStatus();
+        long totalPayments = byStatus.values().stream().mapToLong(StatusTotals::count).sum();
 
         List<PaymentByStatusResponse> result = new ArrayList<>();
 
-        for (Object[] row : statsByStatus) {
-            String status = (String) row[0];
-            Long count = (Long) row[1];
-            BigDecimal totalAmount = (BigDecimal) row[2];
-
+        byStatus.forEach((status, totals) -> {
             // Calculate percentage
             Double percentage = 0.0;
             if (totalPayments > 0) {
-                percentage = (count.doubleValue() / totalPayments.doubleValue()) * 100;
+                percentage = ((double) totals.count() / totalPayments) * 100;
                 percentage = Math.round(percentage * 100.0) / 100.0; // Round to 2 decimal places
             }
 
             result.add(PaymentByStatusResponse.builder()
                     .status(status)
-                    .count(count)
-                    .totalAmount(totalAmount != null ? totalAmount : BigDecimal.ZERO)
+                    .count(totals.count())
+                    .totalAmount(totals.amount())
                     .percentage(percentage)
                     .build());
-        }
+        });
 
         // Sort by count descending
         result.sort((a, b) -> Long.compare(b.getCount(), a.getCount()));
@@ -206,6 +171,8 @@ public class DashboardService {
 
     /**
      * Get daily revenue for a date range
+     * The database groups by (day, status); rows stream into per-day primitive accumulators,
+     * so memory depends on the number of days, not the number of payments
      */
     public List<DailyRevenueResponse> getDailyRevenue(LocalDate startDate, LocalDate endDate) {
         log.info("Getting daily revenue from {} to {}", startDate, endDate);
@@ -216,37 +183,42 @@ public class DashboardService {
         if (startDate == null) {
             startDate = endDate.minusDays(30); // Default to last 30 days
         }
+        if (startDate.isAfter(endDate)) {
+            throw new RuntimeException("startDate must not be after endDate");
+        }
 
-        LocalDateTime start = startDate.atStartOfDay();
-        LocalDateTime end = endDate.atTime(LocalTime.MAX);
-
-        // Get all successful payments in the date range
-        List<Payment> payments = paymentRepository.findPaymentsByDateRange(start, end);
-
-        // Group by date
-        Map<LocalDate, List<Payment>> paymentsByDate = payments.stream()
-                .filter(p -> "SUCCESS".equals(p.getStatus()) && p.getPaidAt() != null)
-                .collect(Collectors.groupingBy(p -> p.getPaidAt().toLocalDate()));
-
-        // Create response for each date
-        List<DailyRevenueResponse> result = new ArrayList<>();
-
-        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
-            List<Payment> dayPayments = paymentsByDate.getOrDefault(date, new ArrayList<>());
-
-            BigDecimal totalRevenue = dayPayments.stream()
-                    .map(Payment::getAmount)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-            Integer orderCount = dayPayments.size();
+        long dayCount = ChronoUnit.DAYS.between(startDate, endDate) + 1;
+        if (dayCount > MAX_DAILY_REVENUE_DAYS) {
+            throw new RuntimeException("Date range too large, maximum is " + MAX_DAILY_REVENUE_DAYS + " days");
+        }
 
-            Integer successfulPayments = (int) dayPayments.stream()
-                    .filter(p -> "SUCCESS".equals(p.getStatus()))
-                    .count();
+        int days = (int) dayCount;
+        long[] revenueMinorUnits = new long[days];
+        int[] successfulPayments = new int[days];
+        int[] failedPayments = new int[days];
+
+        LocalDate firstDay = startDate;
+        try (Stream<Object[]> rows = paymentRepository.streamDailyTotalsByStatus(
+                startDate.atStartOfDay(), endDate.plusDays(1).atStartOfDay())) {
+            rows.forEach(row -> {
+                int index = (int) ChronoUnit.DAYS.between(firstDay, toLocalDate(row[0]));
+                if (index < 0 || index >= days) {
+                    return;
+                }
+                int count = ((Number) row[2]).intValue();
+                if ("SUCCESS".equals(row[1])) {
+                    successfulPayments[index] += count;
+                    revenueMinorUnits[index] += ((BigDecimal) row[3]).movePointRight(2).longValueExact();
+                } else {
+                    failedPayments[index] += count;
+                }
+            });
+        }
 
-            Integer failedPayments = (int) dayPayments.stream()
-                    .filter(p -> "FAILED".equals(p.getStatus()))
-                    .count();
+        List<DailyRevenueResponse> result = new ArrayList<>(days);
+        for (int i = 0; i < days; i++) {
+            BigDecimal totalRevenue = BigDecimal.valueOf(revenueMinorUnits[i], 2);
+            int orderCount = successfulPayments[i];
 
             BigDecimal averageOrderValue = BigDecimal.ZERO;
             if (orderCount > 0) {
@@ -258,16 +230,81 @@ public class DashboardService {
             }
 
             result.add(DailyRevenueResponse.builder()
-                    .date(date)
+                    .date(startDate.plusDays(i))
                     .totalRevenue(totalRevenue)
                     .orderCount(orderCount)
-                    .successfulPayments(successfulPayments)
-                    .failedPayments(failedPayments)
+                    .successfulPayments(successfulPayments[i])
+                    .failedPayments(failedPayments[i])
                     .averageOrderValue(averageOrderValue)
                     .build());
         }
 
         return result;
     }
-}
 
+    private static LocalDate toLocalDate(Object value) {
+        if (value instanceof LocalDate localDate) {
+            return localDate;
+        }
+        return ((java.sql.Date) value).toLocalDate();
+    }
+
+    // ==================== Rollup helpers ====================
+
+    private static final int TODAY = 0;
+    private static final int WEEK = 1;
+    private static final int MONTH = 2;
+    private static final int YEAR = 3;
+
+    /**
+     * All-time count and amount per status, summed over the daily rollups
+     */
+    private Map<String, StatusTotals> totalsByStatus() {
+        Map<String, StatusTotals> result = new HashMap<>();
+        for (Object[] row : rollupRepository.sumByStatus()) {
+            long count = row[1] != null ? ((Number) row[1]).longValue() : 0L;
+            BigDecimal amount = row[2] != null ? (BigDecimal) row[2] : BigDecimal.ZERO;
+            if (count != 0) {
+                result.put((String) row[0], new StatusTotals(count, amount));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * SUCCESS revenue and count for today / last 7 days / last month (/ last year) - day-aligned windows
+     */
+    private PeriodTotals successTotalsByPeriod(LocalDate today, boolean includeYear) {
+        LocalDate[] windowStart = {
+                today,
+                today.minusDays(6),
+                today.minusMonths(1),
+                today.minusYears(1)
+        };
+        int windows = includeYear ? 4 : 3;
+        PeriodTotals totals = new PeriodTotals();
+
+        for (PaymentDailyRollup rollup : rollupRepository.findFrom(windowStart[windows - 1])) {
+            if (!"SUCCESS".equals(rollup.getId().getStatus())) {
+                continue;
+            }
+            LocalDate date = rollup.getId().getRollupDate();
+            for (int i = 0; i < windows; i++) {
+                if (!date.isBefore(windowStart[i]) && !date.isAfter(today)) {
+                    totals.revenue[i] = totals.revenue[i].add(rollup.getTotalAmount());
+                    totals.count[i] += rollup.getPaymentCount();
+                }
+            }
+        }
+        return totals;
+    }
+
+    private record StatusTotals(long count, BigDecimal amount) {
+        static final StatusTotals EMPTY = new StatusTotals(0L, BigDecimal.ZERO);
+    }
+
+    private static final class PeriodTotals {
+        final BigDecimal[] revenue = {BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO};
+        final long[] count = new long[4];
+    }
+}
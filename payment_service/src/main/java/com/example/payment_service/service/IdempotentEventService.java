@@ -67,7 +67,7 @@ public class IdempotentEventService {
         markEventAsProcessed(eventId, eventType, sourceService, payload, "FAILED", errorMessage);
     }
 
-    private String generateHash(String payload) {
+    static String generateHash(String payload) {
         try {
             MessageDigest digest = MessageDigest.getInstance("SHA-256");
             byte[] hash = digest.digest(payload.getBytes(StandardCharsets.UTF_8));
@@ -89,11 +89,11 @@ public class IdempotentEventService {
     public void cleanupOldProcessedEvents() {
         try {
             LocalDateTime cutoffDate = LocalDateTime.now().minusDays(30);
-            List<ProcessedEvent> oldEvents = processedEventRepository.findOldProcessedEvents(cutoffDate);
+            // One DELETE statement instead of loading and deleting the rows one by one
+            int deleted = processedEventRepository.deleteProcessedBefore(cutoffDate);
 
-            if (!oldEvents.isEmpty()) {
-                processedEventRepository.deleteAll(oldEvents);
-                log.info("Cleaned up {} old processed events", oldEvents.size());
+            if (deleted > 0) {
+                log.info("Cleaned up {} old processed events", deleted);
             }
         } catch (Exception e) {
             log.error("Error cleaning up old processed events", e);
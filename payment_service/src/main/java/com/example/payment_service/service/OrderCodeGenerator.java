@@ -0,0 +1,96 @@
+package com.example.payment_service.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snowflake-style id generator for PayOS orderCode and ORD- / TXN- / PAY- codes
+ *
+ * Layout (53 bits, fits PayOS's numeric orderCode and a JavaScript-safe integer):
+ * 41 bits milliseconds since 2024-01-01 | 5 bits node id | 7 bits sequence.
+ * That is 128 ids per millisecond per node for ~69 years, with no lock and no database call.
+ *
+ * The node id comes from payment.id.node-id or the Eureka instance metadata
+ * (eureka.instance.metadata-map.node-id) and must be unique per replica; startup fails without
+ * one, except under the dev / test profiles, where it is derived from the host. When the sequence
+ * runs out or the clock steps back, the generator keeps counting on its last timestamp, so
+ * ids stay unique and increasing.
+ */
+@Component
+@Slf4j
+public class OrderCodeGenerator {
+
+    private static final long EPOCH_MILLIS = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    private static final int NODE_BITS = 5;
+    private static final int SEQUENCE_BITS = 7;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+
+    private final long nodeBits;
+    // (timestamp << SEQUENCE_BITS) | sequence of the last issued id
+    private final AtomicLong lastState = new AtomicLong();
+
+    public OrderCodeGenerator(
+            @Value("${payment.id.node-id:${eureka.instance.metadata-map.node-id:-1}}") long nodeId,
+            @Value("${eureka.instance.instance-id:}") String instanceId,
+            Environment environment) {
+        if (nodeId < 0) {
+            // A derived node id can collide between replicas - only acceptable on a single dev/test instance
+            if (!environment.acceptsProfiles(Profiles.of("dev", "test"))) {
+                throw new IllegalStateException("payment.id.node-id (or eureka.instance.metadata-map.node-id) " +
+                        "must be set to a node id between 0 and " + MAX_NODE_ID + ", unique per replica");
+            }
+            nodeId = fallbackNodeId(instanceId);
+        }
+        if (nodeId > MAX_NODE_ID) {
+            throw new IllegalStateException("payment.id.node-id must be between 0 and " + MAX_NODE_ID + ", was " + nodeId);
+        }
+        this.nodeBits = nodeId << SEQUENCE_BITS;
+        log.info("Order code generator node id: {}", nodeId);
+    }
+
+    /**
+     * Next numeric id - used directly as the PayOS orderCode
+     */
+    public long nextId() {
+        long now = System.currentTimeMillis() - EPOCH_MILLIS;
+        long prev;
+        long next;
+        do {
+            prev = lastState.get();
+            // New millisecond: restart the sequence; otherwise increment, carrying into the timestamp
+            next = (now > (prev >>> SEQUENCE_BITS)) ? now << SEQUENCE_BITS : prev + 1;
+        } while (!lastState.compareAndSet(prev, next));
+
+        long timestamp = next >>> SEQUENCE_BITS;
+        long sequence = next & ((1L << SEQUENCE_BITS) - 1);
+        return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | sequence;
+    }
+
+    /**
+     * Next id as a prefixed base-36 code, e.g. ORD-1A2B3C4D5E
+     */
+    public String nextCode(String prefix) {
+        return prefix + "-" + Long.toString(nextId(), Character.MAX_RADIX).toUpperCase();
+    }
+
+    private static long fallbackNodeId(String instanceId) {
+        String key = instanceId;
+        if (key == null || key.isEmpty()) {
+            try {
+                key = InetAddress.getLocalHost().getHostName();
+            } catch (Exception e) {
+                key = String.valueOf(ProcessHandle.current().pid());
+            }
+        }
+        long nodeId = Math.floorMod(key.hashCode(), MAX_NODE_ID + 1);
+        log.warn("payment.id.node-id is not set, derived node id {} from '{}' (dev/test only)", nodeId, key);
+        return nodeId;
+    }
+}
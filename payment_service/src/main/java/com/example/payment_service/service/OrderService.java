@@ -1,6 +1,7 @@
 package com.example.payment_service.service;
 
 import com.example.payment_service.dto.request.CreateOrderRequest;
+import com.example.payment_service.dto.response.OrderHistoryResponse;
 import com.example.payment_service.dto.response.OrderResponse;
 import com.example.payment_service.entity.*;
 import com.example.payment_service.entity.Package;
@@ -10,15 +11,22 @@ import com.example.payment_service.repository.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
 import java.util.List;
-import java.util.UUID;
+import java.util.regex.Pattern;
 
 @Service
 @RequiredArgsConstructor
@@ -28,10 +36,25 @@ public class OrderService {
     
     private final PaymentOrderRepository orderRepository;
     private final PackageRepository packageRepository;
+    private final PackageCatalogCache packageCatalog;
     private final PaymentRepository paymentRepository;
     private final PromotionService promotionService;
+    private final PromotionReservationService promotionReservationService;
+    private final PaymentExpiryService paymentExpiryService;
+    private final PaymentLookupService paymentLookupService;
+    private final PaymentRollupService paymentRollupService;
     private final PayOS payOS;
     private final PaymentEventProducer eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final OrderCodeGenerator orderCodeGenerator;
+    private final OrderViewCache orderViewCache;
+    
+    private static final Pattern NUMERIC_ID = Pattern.compile("\\d+");
+    // Also used by PaymentService for standalone payments
+    static final int PAYMENT_LINK_TTL_MINUTES = 15;
+    private static final int MAX_HISTORY_PAGE_SIZE = 100;
+    // Cursor of the first page - later than any created_at
+    private static final LocalDateTime HISTORY_START = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
     
     @Value("${payos.enabled:true}")
     private boolean payosEnabled;
@@ -44,184 +67,346 @@ public class OrderService {
     
     /**
      * Create new payment order with package and optional promotion
+     *
+     * Runs as a two-phase pipeline so no DB connection is held during the PayOS round trip:
+     * 1. commit PaymentOrder + Payment (PENDING, no provider link yet)
+     * 2. call PayOS outside any transaction
+     * 3. attach providerTransactionId in a short second transaction
+     * If step 2 fails the order stays PENDING without a link and can be recovered via retryPaymentLink.
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public OrderResponse createOrder(CreateOrderRequest request) {
         try {
-            // 1. Get package
-            Package pkg = packageRepository.findById(request.getPackageId())
-                    .orElseThrow(() -> new RuntimeException("Package not found"));
-            
-            if (!pkg.getIsActive()) {
-                throw new RuntimeException("Package is not active");
+            PendingOrder pending = transactionTemplate.execute(status -> persistPendingOrder(request));
+
+            String paymentUrl = null;
+            if (payosEnabled) {
+                paymentUrl = createAndAttachPaymentLink(pending.order(), pending.pkg(), pending.payment());
+            } else {
+                log.info("PayOS integration is disabled. Order created without payment link: orderCode={}",
+                        pending.order().getOrderCode());
             }
+
+            log.info("Order created: orderCode={}, amount={}, paymentUrl={}", 
+                    pending.order().getOrderCode(), pending.order().getFinalAmount(), paymentUrl);
             
-            // 3. Calculate amounts
-            BigDecimal totalAmount = pkg.getPrice();
-            BigDecimal discountAmount = BigDecimal.ZERO;
+            return mapToOrderResponse(pending.order(), pending.pkg(), paymentUrl, pending.payment().getExpiredAt());
             
-            // Apply promotion if provided
-            if (request.getPromotionCode() != null && !request.getPromotionCode().isEmpty()) {
-                try {
-                    discountAmount = promotionService.applyPromotion(
-                            request.getPromotionCode(), 
-                            request.getUserId(), 
-                            totalAmount
-                    );
-                } catch (Exception e) {
-                    log.warn("Failed to apply promotion: {}", e.getMessage());
-                    // Continue without promotion
-                }
+        } catch (Exception e) {
+            log.error("Error creating order: ", e);
+            throw new RuntimeException("Failed to create order: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Retry PayOS link creation for a PENDING order whose link could not be created
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public OrderResponse retryPaymentLink(Long orderId, Long userId) {
+        PendingOrder pending = transactionTemplate.execute(status -> {
+            PaymentOrder order = orderRepository.findById(orderId)
+                    .orElseThrow(() -> new RuntimeException("Order not found"));
+
+            if (!order.getUserId().equals(String.valueOf(userId))) {
+                throw new RuntimeException("Unauthorized access to order");
+            }
+            if (!"PENDING".equals(order.getStatus())) {
+                throw new RuntimeException("Can only retry payment for pending orders");
             }
-            
-            BigDecimal finalAmount = totalAmount.subtract(discountAmount);
-            
-            // 4. Create order
-            String orderCode = "ORD-" + UUID.randomUUID().toString().substring(0, 12).toUpperCase();
-            
-            PaymentOrder order = PaymentOrder.builder()
-                    .userId(request.getUserId())
-                    .packageInfo(pkg)
-                    .orderCode(orderCode)
-                    .totalAmount(totalAmount)
-                    .discountAmount(discountAmount)
-                    .finalAmount(finalAmount)
-                    .currency("VND")
-                    .status("PENDING")
-                    .description("Purchase " + pkg.getName())
-                    .build();
-            
-            order = orderRepository.save(order);
-            
-            // 5. Create payment
-            String transactionCode = "TXN-" + UUID.randomUUID().toString().substring(0, 12).toUpperCase();
-            Long payOSOrderCode = System.currentTimeMillis(); // For PayOS compatibility
-            
-            Payment payment = Payment.builder()
-                    .order(order)
-                    .transactionCode(transactionCode)
-                    .amount(finalAmount)
-                    .currency("VND")
-                    .status("PENDING")
-                    .expiredAt(LocalDateTime.now().plusMinutes(15))
-                    .build();
-            
-            // 6. Create PayOS payment link if enabled
-            String paymentUrl = null;
-            if (payosEnabled) {
-                try {
-                    ItemData item = ItemData.builder()
-                            .name(pkg.getName() + " - " + pkg.getCredits() + " credits")
-                            .quantity(1)
-                            .price(finalAmount.intValue())
-                            .build();
 
-                    // PayOS requires description to be max 25 characters
-                    String payosDescription = order.getDescription();
-                    if (payosDescription.length() > 25) {
-                        payosDescription = payosDescription.substring(0, 25);
-                    }
+            Payment payment = paymentRepository.findByOrderId(orderId).stream()
+                    .filter(p -> "PENDING".equals(p.getStatus()))
+                    .findFirst()
+                    .orElseThrow(() -> new RuntimeException("No pending payment for order"));
+            if (payment.getProviderTransactionId() != null) {
+                throw new RuntimeException("Payment link already exists for order");
+            }
 
-                    PaymentData paymentData = PaymentData.builder()
-                            .orderCode(payOSOrderCode)
-                            .amount(finalAmount.intValue())
-                            .description(payosDescription)
-                            .items(List.of(item))
-                            .returnUrl(returnUrl)
-                            .cancelUrl(cancelUrl)
-                            .build();
+            // Initialize lazy package inside the transaction
+            Package pkg = order.getPackageInfo();
+            pkg.getName();
+            return new PendingOrder(order, pkg, payment);
+        });
 
-                    CheckoutResponseData checkoutResponse = payOS.createPaymentLink(paymentData);
-                    paymentUrl = checkoutResponse.getCheckoutUrl();
-                    payment.setProviderTransactionId(checkoutResponse.getPaymentLinkId());
+        String paymentUrl = createAndAttachPaymentLink(pending.order(), pending.pkg(), pending.payment());
+        if (paymentUrl == null) {
+            throw new RuntimeException("Failed to create payment link, please try again later");
+        }
+        orderViewCache.invalidateAfterCommit(orderId);
+        return mapToOrderResponse(pending.order(), pending.pkg(), paymentUrl, pending.payment().getExpiredAt());
+    }
 
-                    log.info("PayOS payment link created successfully: orderCode={}, paymentLinkId={}",
-                            orderCode, checkoutResponse.getPaymentLinkId());
-                } catch (Exception e) {
-                    log.error("Failed to create PayOS payment link, order will be created without payment URL: {}",
-                            e.getMessage());
-                    // Order and payment record will still be saved, but without PayOS payment link
-                    // User can retry payment later or use alternative payment method
-                }
-            } else {
-                log.info("PayOS integration is disabled. Order created without payment link: orderCode={}", orderCode);
+    /**
+     * Phase 1: validate package, apply promotion and persist order + payment
+     * Ids come from pooled sequences, so the order, payment and promotion usage inserts are
+     * deferred and flushed together when the transaction commits
+     */
+    private PendingOrder persistPendingOrder(CreateOrderRequest request) {
+        // 1. Get package - from the in-process catalog, no query
+        Package pkg = packageCatalog.findById(request.getPackageId())
+                .orElseThrow(() -> new RuntimeException("Package not found"));
+        
+        if (!pkg.getIsActive()) {
+            throw new RuntimeException("Package is not active");
+        }
+        
+        // 3. Calculate amounts
+        BigDecimal totalAmount = pkg.getPrice();
+        BigDecimal discountAmount = BigDecimal.ZERO;
+        
+        // Apply promotion if provided
+        if (request.getPromotionCode() != null && !request.getPromotionCode().isEmpty()) {
+            try {
+                discountAmount = promotionService.applyPromotion(
+                        request.getPromotionCode(), 
+                        request.getUserId(), 
+                        totalAmount
+                );
+            } catch (Exception e) {
+                log.warn("Failed to apply promotion: {}", e.getMessage());
+                // Continue without promotion
             }
+        }
+        
+        BigDecimal finalAmount = totalAmount.subtract(discountAmount);
+        
+        // 4. Create order
+        String orderCode = orderCodeGenerator.nextCode("ORD");
+        
+        PaymentOrder order = PaymentOrder.builder()
+                .userId(request.getUserId())
+                // Cached package is shared and detached; associate through a reference instead
+                .packageInfo(packageRepository.getReferenceById(pkg.getId()))
+                .orderCode(orderCode)
+                .totalAmount(totalAmount)
+                .discountAmount(discountAmount)
+                .finalAmount(finalAmount)
+                .currency("VND")
+                .status("PENDING")
+                .description("Purchase " + pkg.getName())
+                .build();
+        
+        order = orderRepository.save(order);
+        
+        // 5. Create payment - provider link is attached after commit
+        String transactionCode = orderCodeGenerator.nextCode("TXN");
+        
+        Payment payment = Payment.builder()
+                .order(order)
+                .transactionCode(transactionCode)
+                .amount(finalAmount)
+                .currency("VND")
+                .status("PENDING")
+                .expiredAt(LocalDateTime.now().plusMinutes(PAYMENT_LINK_TTL_MINUTES))
+                .build();
 
-            payment = paymentRepository.save(payment);
-            
-            // 7. Record promotion usage if applied (commented out to prevent transaction rollback)
-            // TODO: Move to @TransactionalEventListener after commit
-            if (discountAmount.compareTo(BigDecimal.ZERO) > 0 && request.getPromotionCode() != null) {
-                promotionService.recordPromotionUsage(
-                        request.getPromotionCode(),
-                        request.getUserId(),
-                        order,
-                        discountAmount
-                );
+        payment = paymentRepository.save(payment);
+        paymentRollupService.recordCreated(payment);
+        paymentExpiryService.track(payment.getId(), payment.getExpiredAt());
+        
+        // 7. Reserve promotion use if applied - committed or released with the payment
+        if (discountAmount.compareTo(BigDecimal.ZERO) > 0 && request.getPromotionCode() != null) {
+            promotionService.reservePromotion(
+                    request.getPromotionCode(),
+                    request.getUserId(),
+                    order,
+                    discountAmount
+            );
 
 //                publishPromotionUsedEvent(request.getUserId(), request.getPromotionCode(), discountAmount);
-            }
+        }
 
-            // 8-9. Event publishing commented out to prevent transaction rollback
-            // TODO: Use @TransactionalEventListener pattern for non-critical events
+        // 8-9. Event publishing commented out to prevent transaction rollback
+        // TODO: Use @TransactionalEventListener pattern for non-critical events
 //            publishOrderCreatedEvent(order, pkg);
 //            publishPaymentInitiatedEvent(payment, order, pkg);
 
-            log.info("Order created: orderCode={}, amount={}, paymentUrl={}", 
-                    orderCode, finalAmount, paymentUrl);
-            
-            return mapToOrderResponse(order, pkg, paymentUrl);
-            
+        return new PendingOrder(order, pkg, payment);
+    }
+
+    /**
+     * Phase 2 + 3: create PayOS link with no transaction open, then attach it to the payment.
+     * Returns the checkout URL that is stored on the payment, or null if PayOS or the attach failed
+     * (payment stays PENDING without a link). A link that loses the attach race or cannot be saved
+     * is cancelled at PayOS.
+     */
+    private String createAndAttachPaymentLink(PaymentOrder order, Package pkg, Payment payment) {
+        long payOSOrderCode = orderCodeGenerator.nextId();
+        BigDecimal finalAmount = payment.getAmount();
+        // The link expires with the payment; a retry after that gets a fresh window
+        LocalDateTime expiry = payment.getExpiredAt() != null
+                && payment.getExpiredAt().isAfter(LocalDateTime.now().plusMinutes(1))
+                ? payment.getExpiredAt()
+                : LocalDateTime.now().plusMinutes(PAYMENT_LINK_TTL_MINUTES);
+
+        CheckoutResponseData checkoutResponse;
+        try {
+            ItemData item = ItemData.builder()
+                    .name(pkg.getName() + " - " + pkg.getCredits() + " credits")
+                    .quantity(1)
+                    .price(finalAmount.intValue())
+                    .build();
+
+            // PayOS requires description to be max 25 characters
+            String payosDescription = order.getDescription();
+            if (payosDescription.length() > 25) {
+                payosDescription = payosDescription.substring(0, 25);
+            }
+
+            PaymentData paymentData = PaymentData.builder()
+                    .orderCode(payOSOrderCode)
+                    .expiredAt((int) expiry.atZone(ZoneId.systemDefault()).toEpochSecond())
+                    .amount(finalAmount.intValue())
+                    .description(payosDescription)
+                    .items(List.of(item))
+                    .returnUrl(returnUrl)
+                    .cancelUrl(cancelUrl)
+                    .build();
+
+            checkoutResponse = payOS.createPaymentLink(paymentData);
         } catch (Exception e) {
-            log.error("Error creating order: ", e);
-            throw new RuntimeException("Failed to create order: " + e.getMessage());
+            log.error("Failed to create PayOS payment link, order {} saved without payment URL " +
+                    "(recoverable via retry): {}", order.getOrderCode(), e.getMessage());
+            return null;
+        }
+
+        Integer attached;
+        try {
+            attached = transactionTemplate.execute(status -> {
+                int updated = paymentRepository.attachPaymentLink(payment.getId(), checkoutResponse.getPaymentLinkId(),
+                        checkoutResponse.getCheckoutUrl(), expiry, LocalDateTime.now());
+                if (updated == 0) {
+                    return 0;
+                }
+                paymentLookupService.registerPaymentLink(
+                        payOSOrderCode, payment.getId(), checkoutResponse.getPaymentLinkId());
+                if (!expiry.equals(payment.getExpiredAt())) {
+                    // Retry with a fresh window - move the expiry timer along
+                    paymentExpiryService.track(payment.getId(), expiry);
+                }
+                return updated;
+            });
+        } catch (Exception e) {
+            log.error("Failed to attach PayOS link to order {}, cancelling it (recoverable via retry): {}",
+                    order.getOrderCode(), e.getMessage());
+            cancelUnusedPaymentLink(payOSOrderCode, "Payment link could not be saved");
+            return null;
+        }
+
+        if (attached == null || attached == 0) {
+            // A concurrent retry attached its link first - drop ours and return the one that was stored
+            cancelUnusedPaymentLink(payOSOrderCode, "Duplicate payment link");
+            Payment stored = paymentRepository.findById(payment.getId()).orElse(null);
+            if (stored == null || stored.getCheckoutUrl() == null) {
+                return null;
+            }
+            payment.setProviderTransactionId(stored.getProviderTransactionId());
+            payment.setCheckoutUrl(stored.getCheckoutUrl());
+            payment.setExpiredAt(stored.getExpiredAt());
+            log.info("Order {} already had a payment link, returning it", order.getOrderCode());
+            return stored.getCheckoutUrl();
         }
+        payment.setProviderTransactionId(checkoutResponse.getPaymentLinkId());
+        payment.setCheckoutUrl(checkoutResponse.getCheckoutUrl());
+        payment.setExpiredAt(expiry);
+
+        log.info("PayOS payment link created successfully: orderCode={}, paymentLinkId={}",
+                order.getOrderCode(), checkoutResponse.getPaymentLinkId());
+        return checkoutResponse.getCheckoutUrl();
+    }
+
+    /**
+     * Fire-and-forget cancel of a PayOS link that did not end up on the payment
+     */
+    private void cancelUnusedPaymentLink(long payOSOrderCode, String reason) {
+        try {
+            payOS.cancelPaymentLinkAsync(payOSOrderCode, reason).exceptionally(ex -> {
+                log.error("Failed to cancel unused PayOS link {}: {}", payOSOrderCode, ex.getMessage());
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("Failed to cancel unused PayOS link {}: {}", payOSOrderCode, e.getMessage());
+        }
+    }
+
+    private record PendingOrder(PaymentOrder order, Package pkg, Payment payment) {
     }
     
     /**
      * Get order by ID
+     * Served from OrderViewCache while fresh; the checkout URL comes from the payment row and
+     * PayOS is only asked when that link is missing or past its expiry
      */
     public OrderResponse getOrder(Long orderId, Long userId) {
+        OrderResponse cached = orderViewCache.get(orderId);
+        if (cached != null) {
+            if (!cached.getUserId().equals(String.valueOf(userId))) {
+                throw new RuntimeException("Unauthorized access to order");
+            }
+            return cached;
+        }
+        
         PaymentOrder order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
         
         // Check ownership
-        if (!order.getUserId().equals(userId)) {
+        if (!order.getUserId().equals(String.valueOf(userId))) {
             throw new RuntimeException("Unauthorized access to order");
         }
         
-        Package pkg = order.getPackageInfo();
+        Package pkg = order.getPackageInfo() != null
+                ? packageCatalog.findById(order.getPackageInfo().getId()).orElse(order.getPackageInfo())
+                : null;
         
         // Get payment URL if exists
         String paymentUrl = null;
-        List<Payment> payments = paymentRepository.findByOrderId(orderId);
-        if (!payments.isEmpty()) {
-            Payment payment = payments.get(0);
-            if ("PENDING".equals(payment.getStatus()) && payment.getProviderTransactionId() != null) {
-                try {
-                    // Try to parse as Long only if it's a numeric value
-                    Long paymentLinkId = null;
-                    String providerTxnId = payment.getProviderTransactionId();
-
-                    // Check if it's a numeric value (PayOS payment link ID)
-                    if (providerTxnId.matches("\\d+")) {
-                        paymentLinkId = Long.parseLong(providerTxnId);
-                    } else {
-                        // If it's not numeric, skip getting payment URL
-                        // This can happen if webhook already updated with order code string
-                        log.debug("Provider transaction ID is not numeric: {}", providerTxnId);
-                    }
-
-                    if (paymentLinkId != null) {
-                        PaymentLinkData linkData = payOS.getPaymentLinkInformation(paymentLinkId);
-                        paymentUrl = linkData.getCheckoutUrl();
-                    }
-                } catch (Exception e) {
-                    log.warn("Failed to get payment URL: {}", e.getMessage());
-                }
-            }
+        LocalDateTime expiresAt = null;
+        Payment payment = paymentRepository.findByOrderId(orderId).stream()
+                .filter(p -> "PENDING".equals(p.getStatus()))
+                .findFirst()
+                .orElse(null);
+        if (payment != null) {
+            expiresAt = payment.getExpiredAt();
+            paymentUrl = checkoutUrl(payment);
         }
         
-        return mapToOrderResponse(order, pkg, paymentUrl);
+        OrderResponse response = mapToOrderResponse(order, pkg, paymentUrl, expiresAt);
+        orderViewCache.put(response);
+        return response;
+    }
+    
+    /**
+     * Checkout URL of a pending payment - the stored one while its link is valid, otherwise
+     * looked up on PayOS (and stored again if the link is still open)
+     */
+    private String checkoutUrl(Payment payment) {
+        boolean expired = payment.getExpiredAt() != null && payment.getExpiredAt().isBefore(LocalDateTime.now());
+        if (payment.getCheckoutUrl() != null && !expired) {
+            return payment.getCheckoutUrl();
+        }
+        
+        String providerTxnId = payment.getProviderTransactionId();
+        if (providerTxnId == null) {
+            return null;
+        }
+        if (!NUMERIC_ID.matcher(providerTxnId).matches()) {
+            // Only numeric ids can be looked up on PayOS
+            // This can happen if webhook already updated with order code string
+            log.debug("Provider transaction ID is not numeric: {}", providerTxnId);
+            return expired ? null : payment.getCheckoutUrl();
+        }
+        
+        try {
+            PaymentLinkData linkData = payOS.getPaymentLinkInformation(Long.parseLong(providerTxnId));
+            if (!"PENDING".equals(linkData.getStatus())) {
+                return null;
+            }
+            payment.setCheckoutUrl(linkData.getCheckoutUrl());
+            return linkData.getCheckoutUrl();
+        } catch (Exception e) {
+            log.warn("Failed to get payment URL: {}", e.getMessage());
+            return null;
+        }
     }
     
     /**
@@ -238,10 +423,52 @@ public class OrderService {
         
         return orders.map(order -> {
             Package pkg = order.getPackageInfo();
-            return mapToOrderResponse(order, pkg, null);
+            return mapToOrderResponse(order, pkg, null, null);
         });
     }
     
+    /**
+     * Get user's orders newest first with keyset (cursor) pagination
+     * One projection query per page (package columns joined, no COUNT, no lazy loads); the cursor
+     * is the (createdAt, id) of the last row, so deep pages cost the same as the first
+     */
+    @Transactional(readOnly = true)
+    public OrderHistoryResponse getOrderHistory(String userId, String status, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_HISTORY_PAGE_SIZE));
+        LocalDateTime afterCreatedAt = HISTORY_START;
+        long afterId = Long.MAX_VALUE;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+                afterCreatedAt = LocalDateTime.parse(parts[0]);
+                afterId = Long.parseLong(parts[1]);
+            } catch (Exception e) {
+                throw new RuntimeException("Invalid order history cursor");
+            }
+        }
+        
+        // Fetch one extra row to know whether there is a next page
+        Limit limit = Limit.of(pageSize + 1);
+        List<OrderHistoryRow> rows = (status != null && !status.isEmpty())
+                ? orderRepository.findHistoryPageByStatus(userId, status, afterCreatedAt, afterId, limit)
+                : orderRepository.findHistoryPage(userId, afterCreatedAt, afterId, limit);
+        
+        boolean hasMore = rows.size() > pageSize;
+        List<OrderHistoryRow> page = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            OrderHistoryRow last = page.get(page.size() - 1);
+            nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    (last.createdAt() + "|" + last.orderId()).getBytes(StandardCharsets.UTF_8));
+        }
+        
+        return OrderHistoryResponse.builder()
+                .orders(page.stream().map(OrderService::mapToOrderResponse).toList())
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+    
     /**
      * Cancel order
      */
@@ -249,7 +476,7 @@ public class OrderService {
         PaymentOrder order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
         
-        if (!order.getUserId().equals(userId)) {
+        if (!order.getUserId().equals(String.valueOf(userId))) {
             throw new RuntimeException("Unauthorized access to order");
         }
         
@@ -259,24 +486,32 @@ public class OrderService {
         
         order.setStatus("CANCELLED");
         order = orderRepository.save(order);
+        promotionReservationService.releaseForOrder(orderId);
+        orderViewCache.invalidateAfterCommit(orderId);
         
         // Cancel associated payments
         List<Payment> payments = paymentRepository.findByOrderId(orderId);
         for (Payment payment : payments) {
             if ("PENDING".equals(payment.getStatus())) {
+                LocalDate oldBucketDate = paymentRollupService.bucketDate(payment);
                 payment.setStatus("CANCELLED");
                 paymentRepository.save(payment);
+                paymentRollupService.recordTransition(payment, "PENDING", oldBucketDate);
                 
                 // Cancel PayOS payment link if exists
                 if (payment.getProviderTransactionId() != null) {
                     try {
                         // Only try to cancel if provider transaction ID is numeric (PayOS payment link ID)
                         String providerTxnId = payment.getProviderTransactionId();
-                        if (providerTxnId.matches("\\d+")) {
-                            payOS.cancelPaymentLink(
+                        if (NUMERIC_ID.matcher(providerTxnId).matches()) {
+                            // Fire-and-forget: the order is already cancelled locally
+                            payOS.cancelPaymentLinkAsync(
                                     Long.parseLong(providerTxnId),
                                     "User cancelled order"
-                            );
+                            ).exceptionally(ex -> {
+                                log.error("Failed to cancel PayOS payment: {}", ex.getMessage());
+                                return null;
+                            });
                         } else {
                             log.debug("Skipping PayOS cancel for non-numeric provider transaction ID: {}", providerTxnId);
                         }
@@ -290,12 +525,13 @@ public class OrderService {
         // Publish order cancelled event
         publishOrderExpiredEvent(order);
         
-        return mapToOrderResponse(order, order.getPackageInfo(), null);
+        return mapToOrderResponse(order, order.getPackageInfo(), null, null);
     }
     
     // ==================== Mappers ====================
     
-    private OrderResponse mapToOrderResponse(PaymentOrder order, Package pkg, String paymentUrl) {
+    static OrderResponse mapToOrderResponse(PaymentOrder order, Package pkg, String paymentUrl,
+                                            LocalDateTime expiresAt) {
         return OrderResponse.builder()
                 .orderId(order.getId())
                 .orderCode(order.getOrderCode())
@@ -311,12 +547,32 @@ public class OrderService {
                 .status(order.getStatus())
                 .description(order.getDescription())
                 .paymentUrl(paymentUrl)
-                .expiresAt(LocalDateTime.now().plusMinutes(15)) // Could be stored in payment
+                .expiresAt(expiresAt)
                 .createdAt(order.getCreatedAt())
                 .updatedAt(order.getUpdatedAt())
                 .build();
     }
     
+    private static OrderResponse mapToOrderResponse(OrderHistoryRow row) {
+        return OrderResponse.builder()
+                .orderId(row.orderId())
+                .orderCode(row.orderCode())
+                .userId(row.userId())
+                .packageId(row.packageId())
+                .packageName(row.packageName())
+                .credits(row.credits())
+                .bonusCredits(row.bonusCredits())
+                .totalAmount(row.totalAmount())
+                .discountAmount(row.discountAmount())
+                .finalAmount(row.finalAmount())
+                .currency(row.currency())
+                .status(row.status())
+                .description(row.description())
+                .createdAt(row.createdAt())
+                .updatedAt(row.updatedAt())
+                .build();
+    }
+    
     // ==================== Event Publishers ====================
     
     private void publishOrderCreatedEvent(PaymentOrder order, Package pkg) {
@@ -0,0 +1,74 @@
+package com.example.payment_service.service;
+
+import com.example.payment_service.dto.response.OrderResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Status-aware cache of GET /orders/{id} responses for clients polling during checkout
+ *
+ * PENDING orders are kept for pending-ttl-ms (and never past their checkout link's expiry), so a
+ * status change made on another replica shows up within that window; orders in a final status
+ * do not change and are kept for terminal-ttl-seconds. Status changes on this instance
+ * invalidate the entry once they commit.
+ */
+@Component
+public class OrderViewCache {
+
+    private final Cache<Long, OrderResponse> views;
+
+    public OrderViewCache(@Value("${payment.order-view-cache.pending-ttl-ms:2000}") long pendingTtlMillis,
+                          @Value("${payment.order-view-cache.terminal-ttl-seconds:300}") long terminalTtlSeconds,
+                          @Value("${payment.order-view-cache.max-size:10000}") long maxSize) {
+        long pendingTtlNanos = TimeUnit.MILLISECONDS.toNanos(pendingTtlMillis);
+        long terminalTtlNanos = TimeUnit.SECONDS.toNanos(terminalTtlSeconds);
+        this.views = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<Long, OrderResponse>() {
+                    @Override
+                    public long expireAfterCreate(Long orderId, OrderResponse view, long currentTime) {
+                        if (!"PENDING".equals(view.getStatus())) {
+                            return terminalTtlNanos;
+                        }
+                        if (view.getExpiresAt() != null) {
+                            long untilExpiry = Duration.between(LocalDateTime.now(), view.getExpiresAt()).toNanos();
+                            return Math.max(0, Math.min(pendingTtlNanos, untilExpiry));
+                        }
+                        return pendingTtlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long orderId, OrderResponse view, long currentTime, long currentDuration) {
+                        return expireAfterCreate(orderId, view, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long orderId, OrderResponse view, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    public OrderResponse get(Long orderId) {
+        return views.getIfPresent(orderId);
+    }
+
+    public void put(OrderResponse view) {
+        views.put(view.getOrderId(), view);
+    }
+
+    /**
+     * Drop the order's view once the current transaction commits
+     */
+    public void invalidateAfterCommit(Long orderId) {
+        TransactionUtils.afterCommit(() -> views.invalidate(orderId));
+    }
+}
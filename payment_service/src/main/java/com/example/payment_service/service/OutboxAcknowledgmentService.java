@@ -0,0 +1,130 @@
+package com.example.payment_service.service;
+
+import com.example.payment_service.entity.OutboxEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Acknowledgment stage of the outbox publisher
+ *
+ * Kafka send callbacks only record their outcome here (they run on the producer I/O thread,
+ * outside any transaction). The publisher flushes the collected PUBLISHED / FAILED transitions
+ * as one JDBC batch per cycle, guarded by the lease owner so a re-claimed row is never overwritten.
+ * Acks that arrive after a cycle's wait are flushed by the next cycle instead of being lost.
+ */
+@Service
+@Slf4j
+public class OutboxAcknowledgmentService {
+
+    private static final String UPDATE_SQL =
+            "UPDATE outbox_events SET status = ?, published_at = ?, retry_count = ?, next_retry_at = ?, " +
+            "last_error = ?, locked_by = NULL, locked_until = NULL " +
+            "WHERE id = ? AND locked_by = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentLinkedQueue<Ack> pendingAcks = new ConcurrentLinkedQueue<>();
+    private final Counter publishedCounter;
+    private final Counter failedCounter;
+
+    public OutboxAcknowledgmentService(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+        this.publishedCounter = Counter.builder("outbox.publish.acks")
+                .description("Outbox events acknowledged by Kafka")
+                .tag("outcome", "published")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("outbox.publish.acks")
+                .description("Outbox events acknowledged by Kafka")
+                .tag("outcome", "failed")
+                .register(meterRegistry);
+        meterRegistry.gauge("outbox.publish.acks.pending", pendingAcks, ConcurrentLinkedQueue::size);
+    }
+
+    /**
+     * Record the outcome of a send; safe to call from Kafka producer threads
+     *
+     * @param sentAtNanos System.nanoTime() taken just before the send
+     * @param error       null when the broker acknowledged the record
+     */
+    public void record(OutboxEvent event, long sentAtNanos, Throwable error) {
+        long latencyNanos = System.nanoTime() - sentAtNanos;
+        Timer.builder("outbox.publish.ack.latency")
+                .description("Time from Kafka send to broker acknowledgment")
+                .tag("event_type", event.getEventType())
+                .tag("outcome", error == null ? "published" : "failed")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry)
+                .record(latencyNanos, TimeUnit.NANOSECONDS);
+
+        if (error == null) {
+            publishedCounter.increment();
+            pendingAcks.add(new Ack(event.getId(), "PUBLISHED", LocalDateTime.now(),
+                    event.getRetryCount(), event.getNextRetryAt(), event.getLastError()));
+            log.debug("Outbox event {} acknowledged for topic {}", event.getId(), event.getEventType());
+            return;
+        }
+
+        failedCounter.increment();
+        if (event.canRetry()) {
+            event.scheduleNextRetry();
+            log.warn("Outbox event {} failed, will retry at {}: {}",
+                    event.getId(), event.getNextRetryAt(), error.getMessage());
+        } else {
+            log.error("Outbox event {} exceeded max retries, marking as FAILED permanently: {}",
+                    event.getId(), error.getMessage());
+        }
+        pendingAcks.add(new Ack(event.getId(), "FAILED", null,
+                event.getRetryCount(), event.getNextRetryAt(), error.getMessage()));
+    }
+
+    /**
+     * Flush all collected acks as a single JDBC batch
+     *
+     * @return number of acks flushed
+     */
+    public int flush(String owner) {
+        List<Ack> acks = new ArrayList<>();
+        Ack ack;
+        while ((ack = pendingAcks.poll()) != null) {
+            acks.add(ack);
+        }
+        if (acks.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, acks, acks.size(), (ps, a) -> {
+                ps.setString(1, a.status());
+                ps.setObject(2, a.publishedAt() != null ? Timestamp.valueOf(a.publishedAt()) : null, Types.TIMESTAMP);
+                ps.setInt(3, a.retryCount());
+                ps.setObject(4, a.nextRetryAt() != null ? Timestamp.valueOf(a.nextRetryAt()) : null, Types.TIMESTAMP);
+                ps.setString(5, a.lastError());
+                ps.setLong(6, a.eventId());
+                ps.setString(7, owner);
+            });
+            log.debug("Flushed {} outbox acks", acks.size());
+            return acks.size();
+        } catch (Exception e) {
+            // Rows stay leased; they are re-claimed after the lease expires
+            log.error("Failed to flush {} outbox acks: {}", acks.size(), e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    private record Ack(Long eventId, String status, LocalDateTime publishedAt,
+                       Integer retryCount, LocalDateTime nextRetryAt, String lastError) {
+    }
+}
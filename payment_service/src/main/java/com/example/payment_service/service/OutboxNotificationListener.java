@@ -0,0 +1,127 @@
+package com.example.payment_service.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Postgres LISTEN side of the outbox wake-up
+ *
+ * EventDispatcher issues NOTIFY in the same transaction as the outbox insert, so Postgres
+ * delivers it only after commit. This listener holds one dedicated connection (outside Hikari)
+ * and wakes OutboxPublisherService as soon as a notification arrives.
+ *
+ * LISTEN needs a session-level connection: with Neon, point outbox.notify.listen-url at the
+ * direct endpoint, not the -pooler host (PgBouncer transaction mode drops notifications). There
+ * LISTEN still succeeds but nothing arrives, so the listener stays off without a listen-url or with
+ * a -pooler one, and the publisher is only told notifications are active once one has arrived.
+ */
+@Service
+@Slf4j
+public class OutboxNotificationListener {
+
+    public static final String CHANNEL = "outbox_events";
+
+    private final OutboxPublisherService publisherService;
+
+    @Value("${outbox.notify.enabled:true}")
+    private boolean enabled;
+
+    @Value("${outbox.notify.listen-url:}")
+    private String listenUrl;
+
+    @Value("${spring.datasource.username}")
+    private String username;
+
+    @Value("${spring.datasource.password}")
+    private String password;
+
+    // getNotifications() wait; also bounds how long shutdown takes
+    @Value("${outbox.notify.poll-timeout-ms:500}")
+    private int pollTimeoutMs;
+
+    @Value("${outbox.notify.reconnect-delay-ms:5000}")
+    private long reconnectDelayMs;
+
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    public OutboxNotificationListener(OutboxPublisherService publisherService) {
+        this.publisherService = publisherService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            log.info("Outbox LISTEN/NOTIFY disabled, publisher relies on polling");
+            return;
+        }
+        if (listenUrl == null || listenUrl.isBlank() || listenUrl.contains("-pooler")) {
+            log.warn("outbox.notify.listen-url is not set to a direct (non -pooler) endpoint, " +
+                    "outbox LISTEN/NOTIFY disabled and publisher relies on polling");
+            return;
+        }
+        running = true;
+        listenerThread = new Thread(this::listenLoop, "outbox-notify-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+
+    private void listenLoop() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(listenUrl, username, password)) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                log.info("Listening for outbox notifications on channel {}", CHANNEL);
+
+                // Catch anything committed while we were not listening
+                publisherService.wakeUp();
+
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(pollTimeoutMs);
+                    if (notifications != null && notifications.length > 0) {
+                        // Only back the idle poll off once NOTIFY is known to get through
+                        publisherService.setNotificationsActive(true);
+                        publisherService.wakeUp();
+                    }
+                }
+            } catch (SQLException e) {
+                publisherService.setNotificationsActive(false);
+                if (running) {
+                    log.warn("Outbox notification listener lost connection, retrying in {}ms: {}",
+                            reconnectDelayMs, e.getMessage());
+                    sleepQuietly(reconnectDelayMs);
+                }
+            }
+        }
+        publisherService.setNotificationsActive(false);
+    }
+
+    private void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
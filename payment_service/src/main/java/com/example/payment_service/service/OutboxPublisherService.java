@@ -5,20 +5,39 @@ import com.example.payment_service.repository.OutboxEventRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Outbox Event Publisher
  *
- * Periodically scans outbox table and publishes pending events to Kafka
+ * Claims pending events from the outbox table and publishes them to Kafka
  * This ensures eventual consistency even if service crashes before publishing
  *
+ * Runs on its own thread, woken by Postgres NOTIFY (see OutboxNotificationListener) right after
+ * an outbox insert commits; adaptive polling only covers missed notifications and due retries
+ *
+ * Multi-instance safe:
+ * - Each cycle leases a bounded batch with FOR UPDATE SKIP LOCKED, so replicas claim disjoint rows
+ * - The lease (locked_by / locked_until) outlives the claim transaction; a crashed instance's
+ *   rows become claimable again once the lease expires
+ * - Send outcomes go through OutboxAcknowledgmentService and are persisted as one JDBC batch per cycle
+ *
  * Production Best Practices:
  * - Uses exponential backoff for retries
  * - Marks events as FAILED after max retries
@@ -33,92 +52,186 @@ public class OutboxPublisherService {
     private final OutboxEventRepository outboxRepository;
     private final KafkaTemplate<String, Object> kafkaTemplate;
     private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxAcknowledgmentService acknowledgmentService;
+    private final String instanceId = "payment-service-" + UUID.randomUUID().toString().substring(0, 8);
+
+    @Value("${outbox.publisher.batch-size:100}")
+    private int batchSize;
+
+    @Value("${outbox.publisher.lease-seconds:60}")
+    private long leaseSeconds;
+
+    // How long a cycle waits for broker acks; must stay below the lease
+    @Value("${outbox.publisher.send-timeout-seconds:30}")
+    private long sendTimeoutSeconds;
+
+    // Upper bound on batches drained per cycle before re-checking the wake-up signal
+    @Value("${outbox.publisher.max-batches-per-cycle:20}")
+    private int maxBatchesPerCycle;
+
+    // Safety-net polling when no notification arrives
+    @Value("${outbox.publisher.idle-poll-min-ms:1000}")
+    private long idlePollMinMs;
+
+    @Value("${outbox.publisher.idle-poll-max-ms:10000}")
+    private long idlePollMaxMs;
+
+    private final Semaphore wakeUpSignal = new Semaphore(0);
+    private volatile boolean notificationsActive;
+    private volatile boolean running;
+    private Thread publisherThread;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        publisherThread = new Thread(this::publishLoop, "outbox-publisher");
+        publisherThread.setDaemon(true);
+        publisherThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (publisherThread != null) {
+            publisherThread.interrupt();
+        }
+    }
 
     /**
-     * Publish pending events every 5 seconds
-     * In production: Use distributed lock (e.g., Redisson) if running multiple instances
+     * Wake the publisher immediately (called on Postgres NOTIFY)
      */
-    @Scheduled(fixedDelay = 5000, initialDelay = 10000)
-    @Transactional
-    public void publishPendingEvents() {
-        try {
-            List<OutboxEvent> pendingEvents = outboxRepository.findPendingEvents(LocalDateTime.now());
+    public void wakeUp() {
+        if (wakeUpSignal.availablePermits() == 0) {
+            wakeUpSignal.release();
+        }
+    }
 
-            if (pendingEvents.isEmpty()) {
-                return;
-            }
+    public void setNotificationsActive(boolean active) {
+        this.notificationsActive = active;
+    }
 
-            log.info("Found {} pending outbox events to publish", pendingEvents.size());
+    /**
+     * Publisher loop: runs a cycle on every wake-up, otherwise polls as a safety net
+     * While notifications are active the idle poll interval backs off up to idle-poll-max-ms;
+     * without them it stays at idle-poll-min-ms
+     */
+    private void publishLoop() {
+        long idleDelayMs = idlePollMinMs;
+        while (running) {
+            try {
+                boolean notified = wakeUpSignal.tryAcquire(idleDelayMs, TimeUnit.MILLISECONDS);
+                wakeUpSignal.drainPermits();
 
-            for (OutboxEvent event : pendingEvents) {
-                try {
-                    publishEvent(event);
-                } catch (Exception e) {
-                    handlePublishFailure(event, e);
+                int published = publishPendingEvents();
+
+                if (published > 0 || notified || !notificationsActive) {
+                    idleDelayMs = idlePollMinMs;
+                } else {
+                    idleDelayMs = Math.min(idleDelayMs * 2, idlePollMaxMs);
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
             }
-        } catch (Exception e) {
-            log.error("Error in outbox publisher job", e);
         }
     }
 
     /**
-     * Publish single event to Kafka
+     * Drain pending events in leased batches
+     * Keeps claiming while full batches come back
+     *
+     * @return number of events claimed in this cycle
      */
-    private void publishEvent(OutboxEvent event) {
+    public int publishPendingEvents() {
+        int claimed = 0;
         try {
-            // Deserialize payload to Object for Kafka
-            Object payload = objectMapper.readValue(event.getPayload(), Object.class);
+            // Acks that arrived after the previous cycle stopped waiting
+            acknowledgmentService.flush(instanceId);
 
-            // Send to Kafka
-            kafkaTemplate.send(event.getEventType(), event.getAggregateId(), payload)
-                .whenComplete((result, ex) -> {
-                    if (ex == null) {
-                        markAsPublished(event);
-                        log.info("Published outbox event {} to topic {}",
-                                event.getId(), event.getEventType());
-                    } else {
-                        log.error("Failed to publish outbox event {}: {}",
-                                event.getId(), ex.getMessage());
-                        throw new RuntimeException("Kafka publish failed", ex);
-                    }
-                });
+            for (int i = 0; i < maxBatchesPerCycle; i++) {
+                List<OutboxEvent> batch = claimBatch();
+                if (batch.isEmpty()) {
+                    break;
+                }
 
+                log.info("Claimed {} pending outbox events to publish", batch.size());
+                claimed += batch.size();
+                publishBatch(batch);
+
+                if (batch.size() < batchSize) {
+                    break;
+                }
+            }
         } catch (Exception e) {
-            log.error("Error publishing outbox event {}: {}", event.getId(), e.getMessage(), e);
-            throw new RuntimeException("Failed to publish event", e);
+            log.error("Error in outbox publisher job", e);
         }
+        return claimed;
     }
 
     /**
-     * Mark event as successfully published
+     * Lock and lease a batch in a short transaction; rows stay leased after commit
      */
-    @Transactional
-    public void markAsPublished(OutboxEvent event) {
-        event.setStatus("PUBLISHED");
-        event.setPublishedAt(LocalDateTime.now());
-        outboxRepository.save(event);
+    private List<OutboxEvent> claimBatch() {
+        List<OutboxEvent> batch = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<OutboxEvent> events = outboxRepository.lockPendingEvents(now, batchSize);
+            if (!events.isEmpty()) {
+                List<Long> ids = events.stream().map(OutboxEvent::getId).toList();
+                outboxRepository.leaseEvents(ids, instanceId, now.plusSeconds(leaseSeconds));
+            }
+            return events;
+        });
+        return batch != null ? batch : List.of();
     }
 
     /**
-     * Handle publish failure with retry logic
+     * Send the whole batch and wait (up to the ack timeout) for broker acks
+     * Outcomes are collected by the acknowledgment stage and flushed as one JDBC batch
      */
-    @Transactional
-    public void handlePublishFailure(OutboxEvent event, Exception e) {
-        event.setLastError(e.getMessage());
-
-        if (event.canRetry()) {
-            event.setStatus("FAILED");
-            event.scheduleNextRetry();
-            log.warn("Outbox event {} failed, will retry at {}",
-                    event.getId(), event.getNextRetryAt());
-        } else {
-            event.setStatus("FAILED");
-            log.error("Outbox event {} exceeded max retries, marking as FAILED permanently",
-                    event.getId());
+    private void publishBatch(List<OutboxEvent> batch) {
+        List<CompletableFuture<?>> acks = new ArrayList<>(batch.size());
+        for (OutboxEvent event : batch) {
+            long sentAt = System.nanoTime();
+            try {
+                acks.add(publishEvent(event)
+                        .whenComplete((result, ex) -> acknowledgmentService.record(event, sentAt, ex)));
+            } catch (Exception e) {
+                acknowledgmentService.record(event, sentAt, e);
+            }
+        }
+
+        try {
+            CompletableFuture.allOf(acks.toArray(CompletableFuture[]::new))
+                    .get(sendTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            // Late acks are flushed by a later cycle; unacked rows are re-claimed after the lease expires
+            long outstanding = acks.stream().filter(f -> !f.isDone()).count();
+            log.warn("{} outbox sends still awaiting broker ack after {}s", outstanding, sendTimeoutSeconds);
+        } catch (ExecutionException e) {
+            // Individual failures were already recorded by the acknowledgment stage
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
 
-        outboxRepository.save(event);
+        acknowledgmentService.flush(instanceId);
+    }
+
+    /**
+     * Publish single event to Kafka
+     */
+    private CompletableFuture<?> publishEvent(OutboxEvent event) {
+        try {
+            // Deserialize payload to Object for Kafka
+            Object payload = objectMapper.readValue(event.getPayload(), Object.class);
+
+            // Send to Kafka
+            return kafkaTemplate.send(event.getEventType(), event.getAggregateId(), payload);
+
+        } catch (Exception e) {
+            log.error("Error publishing outbox event {}: {}", event.getId(), e.getMessage(), e);
+            throw new RuntimeException("Failed to publish event", e);
+        }
     }
 
     /**
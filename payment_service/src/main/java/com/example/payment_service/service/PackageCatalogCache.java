@@ -0,0 +1,193 @@
+package com.example.payment_service.service;
+
+import com.example.payment_service.dto.ApiResponse;
+import com.example.payment_service.dto.response.PackageResponse;
+import com.example.payment_service.entity.Package;
+import com.example.payment_service.event.producer.PaymentEventProducer;
+import com.example.payment_service.repository.PackageRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through, in-process cache of the package catalog
+ *
+ * The whole catalog is loaded in one query into an immutable Snapshot (lookups by id and code,
+ * the active list, and the /active response body pre-serialized to JSON) and swapped in atomically.
+ * Readers never lock and never hit the database while the snapshot is current.
+ *
+ * PackageService invalidates after its write commits and broadcasts payment.package_catalog_changed;
+ * PackageCatalogEventConsumer invalidates the other replicas. max-age bounds staleness if a
+ * broadcast is lost.
+ *
+ * Cached Package instances are detached and shared between threads - treat them as read-only
+ * and never attach them to a persistence context (use getReferenceById for associations).
+ */
+@Service
+@Slf4j
+public class PackageCatalogCache {
+
+    private final PackageRepository packageRepository;
+    private final PaymentEventProducer eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final long maxAgeNanos;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private volatile Snapshot snapshot;
+    // Bumped on every invalidation; a snapshot is current only while its version matches
+    private final AtomicLong version = new AtomicLong();
+
+    public PackageCatalogCache(PackageRepository packageRepository,
+                               PaymentEventProducer eventPublisher,
+                               ObjectMapper objectMapper,
+                               @Value("${payment.package-cache.max-age-seconds:300}") long maxAgeSeconds) {
+        this.packageRepository = packageRepository;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.maxAgeNanos = TimeUnit.SECONDS.toNanos(maxAgeSeconds);
+    }
+
+    public Optional<Package> findById(Long id) {
+        return Optional.ofNullable(current().packagesById.get(id));
+    }
+
+    public Optional<PackageResponse> findResponseById(Long id) {
+        return Optional.ofNullable(current().responsesById.get(id));
+    }
+
+    public Optional<PackageResponse> findResponseByCode(String code) {
+        return Optional.ofNullable(current().responsesByCode.get(code));
+    }
+
+    public List<PackageResponse> getAll() {
+        return current().all;
+    }
+
+    public List<PackageResponse> getActive() {
+        return current().active;
+    }
+
+    /**
+     * Body of GET /api/payments/packages/active, serialized once per snapshot
+     */
+    public byte[] getActiveResponseJson() {
+        return current().activeJson;
+    }
+
+    /**
+     * Drop the snapshot once the current transaction commits and tell the other replicas
+     */
+    public void invalidateAfterCommit(Long packageId, String action) {
+        TransactionUtils.afterCommit(() -> invalidateAndBroadcast(packageId, action));
+    }
+
+    /**
+     * Drop the snapshot because another replica changed the catalog
+     */
+    public void onRemoteChange(String origin, Long packageId, String action) {
+        if (instanceId.equals(origin)) {
+            return;
+        }
+        invalidate();
+        log.info("Package catalog invalidated by {} of package {} on another instance", action, packageId);
+    }
+
+    public void invalidate() {
+        version.incrementAndGet();
+    }
+
+    private void invalidateAndBroadcast(Long packageId, String action) {
+        invalidate();
+        try {
+            eventPublisher.publishPackageCatalogChanged(packageId, action, instanceId);
+        } catch (Exception e) {
+            log.warn("Failed to broadcast package catalog change for package {}: {}", packageId, e.getMessage());
+        }
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (isCurrent(current)) {
+            return current;
+        }
+        return load();
+    }
+
+    private boolean isCurrent(Snapshot current) {
+        return current != null
+                && current.version == version.get()
+                && System.nanoTime() - current.loadedAtNanos < maxAgeNanos;
+    }
+
+    /**
+     * Single-flight reload - concurrent misses wait for one query instead of each running it.
+     * The version is read before the query, so a load that races with an invalidation is
+     * installed already stale and reloaded by the next reader.
+     */
+    private synchronized Snapshot load() {
+        Snapshot current = snapshot;
+        if (isCurrent(current)) {
+            return current;
+        }
+
+        long loadVersion = version.get();
+        Snapshot loaded = new Snapshot(loadVersion, packageRepository.findAll(), objectMapper);
+        snapshot = loaded;
+        log.debug("Loaded package catalog snapshot with {} packages", loaded.all.size());
+        return loaded;
+    }
+
+    private static final class Snapshot {
+        final Map<Long, Package> packagesById;
+        final Map<Long, PackageResponse> responsesById;
+        final Map<String, PackageResponse> responsesByCode;
+        final List<PackageResponse> all;
+        final List<PackageResponse> active;
+        final byte[] activeJson;
+        final long version;
+        final long loadedAtNanos = System.nanoTime();
+
+        Snapshot(long version, List<Package> packages, ObjectMapper objectMapper) {
+            this.version = version;
+            Map<Long, Package> byId = new HashMap<>();
+            Map<Long, PackageResponse> responseById = new HashMap<>();
+            Map<String, PackageResponse> responseByCode = new HashMap<>();
+            for (Package pkg : packages) {
+                PackageResponse response = PackageService.mapToResponse(pkg);
+                byId.put(pkg.getId(), pkg);
+                responseById.put(pkg.getId(), response);
+                responseByCode.put(pkg.getCode(), response);
+            }
+            this.packagesById = Map.copyOf(byId);
+            this.responsesById = Map.copyOf(responseById);
+            this.responsesByCode = Map.copyOf(responseByCode);
+            this.all = packages.stream()
+                    .map(pkg -> responseById.get(pkg.getId()))
+                    .toList();
+            this.active = all.stream()
+                    .filter(pkg -> Boolean.TRUE.equals(pkg.getIsActive()))
+                    .sorted(Comparator.comparing(PackageResponse::getSortOrder,
+                            Comparator.nullsLast(Comparator.naturalOrder())))
+                    .toList();
+            try {
+                this.activeJson = objectMapper.writeValueAsBytes(ApiResponse.<List<PackageResponse>>builder()
+                        .code(1000)
+                        .message("Active packages retrieved successfully")
+                        .result(active)
+                        .build());
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to serialize active packages", e);
+            }
+        }
+    }
+}
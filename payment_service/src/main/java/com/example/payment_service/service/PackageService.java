@@ -8,10 +8,10 @@ import com.example.payment_service.repository.PackageRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -20,6 +20,7 @@ import java.util.stream.Collectors;
 public class PackageService {
 
     private final PackageRepository packageRepository;
+    private final PackageCatalogCache packageCatalog;
 
     /**
      * Create a new package
@@ -46,6 +47,7 @@ public class PackageService {
                 .build();
 
         Package savedPackage = packageRepository.save(pkg);
+        packageCatalog.invalidateAfterCommit(savedPackage.getId(), "CREATED");
         log.info("Package created successfully with id: {}", savedPackage.getId());
 
         return mapToResponse(savedPackage);
@@ -53,52 +55,53 @@ public class PackageService {
 
     /**
      * Get package by ID
+     * Reads go through PackageCatalogCache and open no transaction
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public PackageResponse getPackageById(Long id) {
-        log.info("Getting package by id: {}", id);
+        log.debug("Getting package by id: {}", id);
 
-        Package pkg = packageRepository.findById(id)
+        return packageCatalog.findResponseById(id)
                 .orElseThrow(() -> new RuntimeException("Package not found with id: " + id));
-
-        return mapToResponse(pkg);
     }
 
     /**
      * Get package by code
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public PackageResponse getPackageByCode(String code) {
-        log.info("Getting package by code: {}", code);
+        log.debug("Getting package by code: {}", code);
 
-        Package pkg = packageRepository.findByCode(code)
+        return packageCatalog.findResponseByCode(code)
                 .orElseThrow(() -> new RuntimeException("Package not found with code: " + code));
-
-        return mapToResponse(pkg);
     }
 
     /**
      * Get all packages
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public List<PackageResponse> getAllPackages() {
-        log.info("Getting all packages");
+        log.debug("Getting all packages");
 
-        return packageRepository.findAll().stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        return packageCatalog.getAll();
     }
 
     /**
      * Get all active packages
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public List<PackageResponse> getActivePackages() {
-        log.info("Getting all active packages");
+        log.debug("Getting all active packages");
 
-        return packageRepository.findByIsActiveTrueOrderBySortOrderAsc().stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        return packageCatalog.getActive();
+    }
+
+    /**
+     * Active packages as the pre-serialized ApiResponse body for GET /active
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public byte[] getActivePackagesJson() {
+        return packageCatalog.getActiveResponseJson();
     }
 
     /**
@@ -140,6 +143,7 @@ public class PackageService {
         }
 
         Package updatedPackage = packageRepository.save(pkg);
+        packageCatalog.invalidateAfterCommit(id, "UPDATED");
         log.info("Package updated successfully with id: {}", updatedPackage.getId());
 
         return mapToResponse(updatedPackage);
@@ -155,6 +159,7 @@ public class PackageService {
                 .orElseThrow(() -> new RuntimeException("Package not found with id: " + id));
 
         packageRepository.delete(pkg);
+        packageCatalog.invalidateAfterCommit(id, "DELETED");
         log.info("Package deleted successfully with id: {}", id);
     }
 
@@ -169,6 +174,7 @@ public class PackageService {
 
         pkg.setIsActive(!pkg.getIsActive());
         Package updatedPackage = packageRepository.save(pkg);
+        packageCatalog.invalidateAfterCommit(id, "STATUS_CHANGED");
 
         log.info("Package status toggled to: {} for id: {}", updatedPackage.getIsActive(), id);
 
@@ -178,7 +184,7 @@ public class PackageService {
     /**
      * Map Package entity to PackageResponse DTO
      */
-    private PackageResponse mapToResponse(Package pkg) {
+    static PackageResponse mapToResponse(Package pkg) {
         return PackageResponse.builder()
                 .id(pkg.getId())
                 .name(pkg.getName())
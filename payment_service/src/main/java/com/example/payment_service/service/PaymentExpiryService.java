@@ -0,0 +1,202 @@
+package com.example.payment_service.service;
+
+import com.example.payment_service.entity.Payment;
+import com.example.payment_service.entity.PaymentLinkMapping;
+import com.example.payment_service.entity.PaymentOrder;
+import com.example.payment_service.event.producer.PaymentEventProducer;
+import com.example.payment_service.payos.PayOS;
+import com.example.payment_service.repository.PaymentLinkMappingRepository;
+import com.example.payment_service.repository.PaymentOrderRepository;
+import com.example.payment_service.repository.PaymentRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Expires PENDING payments at their expiredAt
+ *
+ * Deadlines live on an in-memory hierarchical TimingWheel keyed by payment id: pending payments
+ * are loaded from expired_at at startup and new ones are registered when their order commits,
+ * so there is no periodic scan of the payments table. Expired payments are handled in batches of
+ * batch-size per transaction: payment and order become EXPIRED, the promotion reservation is
+ * released and OrderExpiredEvent is published; PayOS links are cancelled after commit.
+ *
+ * Every instance fires its own deadlines; the payments are re-read with a row lock and only
+ * those still PENDING and past expiredAt are expired, so a payment that was paid, cancelled
+ * or given a later deadline in the meantime is left alone.
+ */
+@Service
+@Slf4j
+public class PaymentExpiryService {
+
+    private static final String EXPIRED = "EXPIRED";
+
+    private final PaymentRepository paymentRepository;
+    private final PaymentOrderRepository orderRepository;
+    private final PaymentLinkMappingRepository linkMappingRepository;
+    private final PaymentRollupService paymentRollupService;
+    private final PromotionReservationService promotionReservationService;
+    private final OrderViewCache orderViewCache;
+    private final PaymentEventProducer eventPublisher;
+    private final PayOS payOS;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long retryDelayMs;
+    private final TimingWheel<Long> expiryWheel;
+
+    public PaymentExpiryService(PaymentRepository paymentRepository,
+                                PaymentOrderRepository orderRepository,
+                                PaymentLinkMappingRepository linkMappingRepository,
+                                PaymentRollupService paymentRollupService,
+                                PromotionReservationService promotionReservationService,
+                                OrderViewCache orderViewCache,
+                                PaymentEventProducer eventPublisher,
+                                PayOS payOS,
+                                TransactionTemplate transactionTemplate,
+                                @Value("${payment.expiry.batch-size:200}") int batchSize,
+                                @Value("${payment.expiry.retry-delay-ms:5000}") long retryDelayMs,
+                                @Value("${payment.expiry.wheel.tick-ms:1000}") long tickMillis,
+                                @Value("${payment.expiry.wheel.size:512}") int wheelSize) {
+        this.paymentRepository = paymentRepository;
+        this.orderRepository = orderRepository;
+        this.linkMappingRepository = linkMappingRepository;
+        this.paymentRollupService = paymentRollupService;
+        this.promotionReservationService = promotionReservationService;
+        this.orderViewCache = orderViewCache;
+        this.eventPublisher = eventPublisher;
+        this.payOS = payOS;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.retryDelayMs = retryDelayMs;
+        this.expiryWheel = new TimingWheel<>("payment-expiry", tickMillis, wheelSize, this::expire);
+    }
+
+    @PostConstruct
+    public void start() {
+        expiryWheel.start();
+        try {
+            List<Object[]> pending = paymentRepository.findPendingDeadlines();
+            for (Object[] row : pending) {
+                expiryWheel.schedule((Long) row[0], toEpochMillis(toLocalDateTime(row[1])));
+            }
+            log.info("Loaded {} pending payment deadlines", pending.size());
+        } catch (Exception e) {
+            log.error("Failed to load pending payment deadlines: {}", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        expiryWheel.stop();
+    }
+
+    /**
+     * Start (or move) the payment's expiry timer once the current transaction commits
+     */
+    public void track(Long paymentId, LocalDateTime expiredAt) {
+        long deadline = toEpochMillis(expiredAt);
+        TransactionUtils.afterCommit(() -> expiryWheel.schedule(paymentId, deadline));
+    }
+
+    public int pendingPayments() {
+        return expiryWheel.size();
+    }
+
+    /**
+     * Wheel callback: expire the payments of this tick, batch-size per transaction
+     */
+    private void expire(List<Long> paymentIds) {
+        int expired = 0;
+        for (int from = 0; from < paymentIds.size(); from += batchSize) {
+            List<Long> batch = paymentIds.subList(from, Math.min(from + batchSize, paymentIds.size()));
+            try {
+                Integer count = transactionTemplate.execute(status -> expireBatch(batch));
+                expired += count != null ? count : 0;
+            } catch (Exception e) {
+                // Still PENDING in the database - put the batch back on the wheel for another try
+                long retryAt = System.currentTimeMillis() + retryDelayMs;
+                batch.forEach(paymentId -> expiryWheel.schedule(paymentId, retryAt));
+                log.error("Failed to expire {} payments, retrying in {}ms: {}",
+                        batch.size(), retryDelayMs, e.getMessage(), e);
+            }
+        }
+        log.info("Expired {} of {} due payments", expired, paymentIds.size());
+    }
+
+    private int expireBatch(List<Long> paymentIds) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Payment> payments = paymentRepository.lockExpiredPending(paymentIds, now);
+        if (payments.isEmpty()) {
+            return 0;
+        }
+        // Load the orders in one query so payment.getOrder() resolves from the persistence context
+        orderRepository.findAllById(payments.stream()
+                .map(payment -> payment.getOrder() != null ? payment.getOrder().getId() : null)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList());
+
+        List<PaymentRollupService.Transition> transitions = new ArrayList<>(payments.size());
+        List<Long> expiredIds = new ArrayList<>(payments.size());
+        for (Payment payment : payments) {
+            LocalDate oldBucketDate = paymentRollupService.bucketDate(payment);
+            payment.setStatus(EXPIRED);
+            payment.setUpdatedAt(now);
+            transitions.add(paymentRollupService.transition(payment, "PENDING", oldBucketDate));
+            expiredIds.add(payment.getId());
+
+            PaymentOrder order = payment.getOrder();
+            if (order != null && "PENDING".equals(order.getStatus())) {
+                order.setStatus(EXPIRED);
+                promotionReservationService.releaseForOrder(order.getId());
+                orderViewCache.invalidateAfterCommit(order.getId());
+                eventPublisher.publishOrderExpired(order.getId(), order.getUserId());
+            }
+        }
+        paymentRollupService.recordTransitions(transitions);
+
+        List<PaymentLinkMapping> links = linkMappingRepository.findByPaymentIdIn(expiredIds);
+        TransactionUtils.afterCommit(() -> cancelPaymentLinks(links));
+        return payments.size();
+    }
+
+    /**
+     * Fire-and-forget: the payments are already expired locally and PayOS expires the links itself
+     */
+    private void cancelPaymentLinks(List<PaymentLinkMapping> links) {
+        for (PaymentLinkMapping link : links) {
+            try {
+                payOS.cancelPaymentLinkAsync(link.getPayosOrderCode(), "Payment expired")
+                        .exceptionally(ex -> {
+                            log.warn("Failed to cancel expired PayOS link {}: {}",
+                                    link.getPayosOrderCode(), ex.getMessage());
+                            return null;
+                        });
+            } catch (Exception e) {
+                log.warn("Failed to cancel expired PayOS link {}: {}", link.getPayosOrderCode(), e.getMessage());
+            }
+        }
+    }
+
+    private static LocalDateTime toLocalDateTime(Object value) {
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime();
+        }
+        return (LocalDateTime) value;
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.payment_service.service;
+
+import com.example.payment_service.entity.PaymentLinkMapping;
+import com.example.payment_service.repository.PaymentLinkMappingRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Resolves PayOS orderCode -> payment id for webhooks
+ *
+ * Mappings are persisted in payment_link_mappings (keyed by orderCode) at link creation time
+ * and kept in a bounded in-memory cache, so webhook resolution is a cache hit or a primary key lookup.
+ */
+@Service
+@Slf4j
+public class PaymentLookupService {
+
+    private final PaymentLinkMappingRepository mappingRepository;
+    private final Cache<Long, Long> paymentIdByOrderCode;
+
+    public PaymentLookupService(
+            PaymentLinkMappingRepository mappingRepository,
+            @Value("${payment.lookup.cache.max-size:10000}") long maxSize,
+            @Value("${payment.lookup.cache.ttl-minutes:60}") long ttlMinutes) {
+        this.mappingRepository = mappingRepository;
+        this.paymentIdByOrderCode = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .build();
+    }
+
+    /**
+     * Persist the mapping for a newly created PayOS link
+     * The cache is only populated once the surrounding transaction commits
+     */
+    @Transactional
+    public void registerPaymentLink(Long payosOrderCode, Long paymentId, String paymentLinkId) {
+        mappingRepository.save(PaymentLinkMapping.builder()
+                .payosOrderCode(payosOrderCode)
+                .paymentId(paymentId)
+                .paymentLinkId(paymentLinkId)
+                .build());
+
+        TransactionUtils.afterCommit(() -> paymentIdByOrderCode.put(payosOrderCode, paymentId));
+
+        log.debug("Registered PayOS orderCode {} -> payment {}", payosOrderCode, paymentId);
+    }
+
+    /**
+     * Find payment id by PayOS orderCode - cache first, then indexed table
+     */
+    @Transactional(readOnly = true)
+    public Optional<Long> findPaymentId(Long payosOrderCode) {
+        if (payosOrderCode == null) {
+            return Optional.empty();
+        }
+
+        Long cached = paymentIdByOrderCode.getIfPresent(payosOrderCode);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        Optional<Long> paymentId = mappingRepository.findById(payosOrderCode)
+                .map(PaymentLinkMapping::getPaymentId);
+        paymentId.ifPresent(id -> paymentIdByOrderCode.put(payosOrderCode, id));
+        return paymentId;
+    }
+}
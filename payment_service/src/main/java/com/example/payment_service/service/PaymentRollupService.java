@@ -0,0 +1,201 @@
+package com.example.payment_service.service;
+
+import com.example.payment_service.entity.Payment;
+import com.example.payment_service.repository.PaymentDailyRollupRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maintains payment_daily_rollups incrementally
+ *
+ * Every status change moves the payment from its old (date, status) bucket to the new one in the
+ * same transaction as the payment update, so the dashboard reads O(days) rows instead of
+ * aggregating the payments table. The table is backfilled from payments on first startup and
+ * reconciled nightly.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentRollupService {
+
+    private final PaymentDailyRollupRepository rollupRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    // Same upsert as PaymentDailyRollupRepository.applyDelta
+    private static final String APPLY_DELTA_SQL =
+            "INSERT INTO payment_daily_rollups (rollup_date, status, payment_count, total_amount) " +
+            "VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (rollup_date, status) DO UPDATE SET " +
+            "payment_count = payment_daily_rollups.payment_count + EXCLUDED.payment_count, " +
+            "total_amount = payment_daily_rollups.total_amount + EXCLUDED.total_amount";
+
+    /**
+     * Count a payment created in this transaction
+     * With pooled sequence ids save() doesn't insert, so createdAt is still null here; it is stamped
+     * when the insert is flushed at commit, i.e. today
+     */
+    @Transactional
+    public void recordCreated(Payment payment) {
+        LocalDate createdDate = payment.getCreatedAt() != null ? payment.getCreatedAt().toLocalDate() : LocalDate.now();
+        rollupRepository.applyDelta(createdDate, payment.getStatus(), 1, amountOf(payment));
+    }
+
+    /**
+     * Move a payment between buckets after a status change
+     *
+     * @param oldStatus status before the change
+     * @param oldDate   bucketDate(payment) taken before the payment was modified
+     */
+    @Transactional
+    public void recordTransition(Payment payment, String oldStatus, LocalDate oldDate) {
+        if (oldStatus == null || oldStatus.equals(payment.getStatus())) {
+            return;
+        }
+        BigDecimal amount = amountOf(payment);
+        rollupRepository.applyDelta(oldDate, oldStatus, -1, amount.negate());
+        rollupRepository.applyDelta(currentBucketDate(payment), payment.getStatus(), 1, amount);
+    }
+
+    /**
+     * A status change captured when it happens, to be applied later with recordTransitions
+     */
+    public record Transition(LocalDate oldDate, String oldStatus, LocalDate newDate, String newStatus,
+                             BigDecimal amount) {
+    }
+
+    /**
+     * Capture a status change (same arguments as recordTransition) without writing it yet
+     */
+    public Transition transition(Payment payment, String oldStatus, LocalDate oldDate) {
+        return new Transition(oldDate, oldStatus, currentBucketDate(payment), payment.getStatus(), amountOf(payment));
+    }
+
+    /**
+     * Apply a batch of transitions: deltas are netted per (date, status) bucket and written as
+     * one JDBC batch of upserts, instead of two upserts per transition
+     */
+    @Transactional
+    public void recordTransitions(List<Transition> transitions) {
+        Map<BucketKey, BucketDelta> deltas = new LinkedHashMap<>();
+        for (Transition transition : transitions) {
+            if (transition.oldStatus() == null || transition.oldStatus().equals(transition.newStatus())) {
+                continue;
+            }
+            deltas.computeIfAbsent(new BucketKey(transition.oldDate(), transition.oldStatus()), k -> new BucketDelta())
+                    .add(-1, transition.amount().negate());
+            deltas.computeIfAbsent(new BucketKey(transition.newDate(), transition.newStatus()), k -> new BucketDelta())
+                    .add(1, transition.amount());
+        }
+
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        deltas.forEach((bucket, delta) -> {
+            if (delta.count != 0 || delta.amount.signum() != 0) {
+                rows.add(new Object[]{bucket.date(), bucket.status(), delta.count, delta.amount});
+            }
+        });
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(APPLY_DELTA_SQL, rows);
+        }
+    }
+
+    private record BucketKey(LocalDate date, String status) {
+    }
+
+    private static final class BucketDelta {
+        long count;
+        BigDecimal amount = BigDecimal.ZERO;
+
+        void add(long count, BigDecimal amount) {
+            this.count += count;
+            this.amount = this.amount.add(amount);
+        }
+    }
+
+    /**
+     * Day a payment is counted on for its current status
+     * SUCCESS is counted on paidAt, every other status on createdAt - both are fixed once set, so
+     * later updates (e.g. of updatedAt) never move a payment between days
+     * Must match the bucketing in PaymentDailyRollupRepository.backfillFromPayments
+     */
+    public LocalDate bucketDate(Payment payment) {
+        if ("SUCCESS".equals(payment.getStatus()) && payment.getPaidAt() != null) {
+            return payment.getPaidAt().toLocalDate();
+        }
+        if (!"SUCCESS".equals(payment.getStatus()) && payment.getCreatedAt() != null) {
+            return payment.getCreatedAt().toLocalDate();
+        }
+        if (payment.getUpdatedAt() != null) {
+            return payment.getUpdatedAt().toLocalDate();
+        }
+        return payment.getCreatedAt() != null ? payment.getCreatedAt().toLocalDate() : LocalDate.now();
+    }
+
+    /**
+     * Bucket for a status just set in this transaction - updatedAt is only refreshed on flush
+     */
+    private LocalDate currentBucketDate(Payment payment) {
+        if ("SUCCESS".equals(payment.getStatus()) && payment.getPaidAt() != null) {
+            return payment.getPaidAt().toLocalDate();
+        }
+        if (!"SUCCESS".equals(payment.getStatus()) && payment.getCreatedAt() != null) {
+            return payment.getCreatedAt().toLocalDate();
+        }
+        return LocalDate.now();
+    }
+
+    private BigDecimal amountOf(Payment payment) {
+        return payment.getAmount() != null ? payment.getAmount() : BigDecimal.ZERO;
+    }
+
+    /**
+     * Backfill once when the rollup table is empty
+     * Runs during startup, before this instance accepts webhooks or Kafka messages
+     */
+    @PostConstruct
+    public void backfillIfEmpty() {
+        rebuild(false);
+    }
+
+    /**
+     * Nightly reconciliation - rebuilds all buckets from payments to correct any drift
+     * (e.g. transitions made by instances running without rollup support)
+     */
+    @Scheduled(cron = "${payment.rollup.rebuild-cron:0 30 3 * * *}")
+    public void reconcile() {
+        rebuild(true);
+    }
+
+    private void rebuild(boolean replaceExisting) {
+        try {
+            Integer inserted = transactionTemplate.execute(status -> {
+                // Serializes backfills across replicas; released on commit
+                jdbcTemplate.execute("SELECT pg_advisory_xact_lock(hashtext('payment_daily_rollups'))");
+                if (replaceExisting) {
+                    jdbcTemplate.update("DELETE FROM payment_daily_rollups");
+                } else if (rollupRepository.count() > 0) {
+                    return 0;
+                }
+                return rollupRepository.backfillFromPayments();
+            });
+            if (inserted != null && inserted > 0) {
+                log.info("Rebuilt {} payment rollup buckets from payments", inserted);
+            }
+        } catch (Exception e) {
+            log.error("Failed to rebuild payment rollups: {}", e.getMessage(), e);
+        }
+    }
+}
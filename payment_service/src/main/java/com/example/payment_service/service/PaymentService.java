@@ -4,9 +4,7 @@ import com.example.payment_service.dto.request.CreatePaymentRequest;
 import com.example.payment_service.dto.response.PaymentResponse;
 import com.example.payment_service.entity.Payment;
 import com.example.payment_service.entity.PaymentStatus;
-import com.example.payment_service.event.payload.PaymentCompletedEvent;
-import com.example.payment_service.event.payload.PaymentFailedEvent;
-import com.example.payment_service.event.payload.PaymentInitiatedEvent;
+import com.example.payment_service.event.producer.PaymentEventProducer;
 import com.example.payment_service.exception.PaymentNotFoundException;
 import com.example.payment_service.payos.CheckoutResponseData;
 import com.example.payment_service.payos.ItemData;
@@ -18,13 +16,13 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * Service for handling payment operations
@@ -37,7 +35,13 @@ public class PaymentService {
     
     private final PaymentRepository paymentRepository;
     private final PayOS payOS;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final PaymentLookupService paymentLookupService;
+    private final PaymentRollupService paymentRollupService;
+    private final PaymentEventProducer eventPublisher;
+    private final OrderCodeGenerator orderCodeGenerator;
+    private final PromotionReservationService promotionReservationService;
+    private final OrderViewCache orderViewCache;
+    private final PaymentExpiryService paymentExpiryService;
     
     @Value("${payos.return-url}")
     private String returnUrl;
@@ -55,7 +59,7 @@ public class PaymentService {
     public PaymentResponse createPayment(CreatePaymentRequest request) {
         try {
             // Generate unique transaction code
-            String transactionCode = generateTransactionCode();
+            String transactionCode = orderCodeGenerator.nextCode("PAY");
             
             // Create payment entity
             Payment payment = new Payment();
@@ -63,9 +67,12 @@ public class PaymentService {
             payment.setAmount(request.getAmount());
             payment.setCurrency("VND");
             payment.setStatus("PENDING");
+            payment.setExpiredAt(LocalDateTime.now().plusMinutes(OrderService.PAYMENT_LINK_TTL_MINUTES));
             
             // Save payment first to get ID
             payment = paymentRepository.save(payment);
+            paymentRollupService.recordCreated(payment);
+            paymentExpiryService.track(payment.getId(), payment.getExpiredAt());
             
             // Create PayOS payment data
             ItemData item = new ItemData();
@@ -73,8 +80,7 @@ public class PaymentService {
             item.setQuantity(1);
             item.setPrice(request.getAmount().intValue());
             
-            // Generate order code from payment ID
-            long orderCode = generateOrderCode(payment.getId());
+            long orderCode = orderCodeGenerator.nextId();
             
             PaymentData paymentData = new PaymentData();
             paymentData.setOrderCode(orderCode);
@@ -83,13 +89,16 @@ public class PaymentService {
             paymentData.setItems(List.of(item));
             paymentData.setReturnUrl(returnUrl);
             paymentData.setCancelUrl(cancelUrl);
+            paymentData.setExpiredAt((int) payment.getExpiredAt().atZone(ZoneId.systemDefault()).toEpochSecond());
             
             // Create payment link with PayOS
             CheckoutResponseData checkoutResponse = payOS.createPaymentLink(paymentData);
             
             // Update payment with PayOS response
             payment.setProviderTransactionId(String.valueOf(orderCode));
+            payment.setCheckoutUrl(checkoutResponse.getCheckoutUrl());
             payment = paymentRepository.save(payment);
+            paymentLookupService.registerPaymentLink(orderCode, payment.getId(), checkoutResponse.getPaymentLinkId());
             
             // Publish payment initiated event
             publishPaymentInitiatedEvent(payment, request.getUserId());
@@ -181,6 +190,7 @@ public class PaymentService {
         }
         
         // Update status
+        LocalDate oldBucketDate = paymentRollupService.bucketDate(payment);
         payment.setStatus(newStatus);
         
         // Update timestamps based on status
@@ -189,6 +199,17 @@ public class PaymentService {
         }
         
         payment = paymentRepository.save(payment);
+        paymentRollupService.recordTransition(payment, oldStatus, oldBucketDate);
+        
+        // Commit or release the order's promotion reservation
+        if (payment.getOrder() != null) {
+            orderViewCache.invalidateAfterCommit(payment.getOrder().getId());
+            if ("SUCCESS".equals(newStatus)) {
+                promotionReservationService.commitForOrder(payment.getOrder().getId());
+            } else if ("FAILED".equals(newStatus) || "CANCELLED".equals(newStatus)) {
+                promotionReservationService.releaseForOrder(payment.getOrder().getId());
+            }
+        }
         
         // Publish status change events
         publishStatusChangeEvent(payment, oldStatus, newStatus);
@@ -240,30 +261,6 @@ public class PaymentService {
         };
     }
     
-    /**
-     * Generates a unique transaction code
-     * 
-     * @return Unique transaction code
-     */
-    private String generateTransactionCode() {
-        String code;
-        do {
-            code = "PAY-" + UUID.randomUUID().toString().substring(0, 13).toUpperCase();
-        } while (paymentRepository.findByTransactionCode(code).isPresent());
-        return code;
-    }
-    
-    /**
-     * Generates order code from payment ID
-     * 
-     * @param paymentId Payment ID
-     * @return Order code
-     */
-    private long generateOrderCode(Long paymentId) {
-        // Generate a 7-digit order code based on payment ID and timestamp
-        return (paymentId * 1000 + System.currentTimeMillis() % 1000) % 10000000;
-    }
-    
     /**
      * Publishes payment initiated event to Kafka
      * 
@@ -272,15 +269,8 @@ public class PaymentService {
      */
     private void publishPaymentInitiatedEvent(Payment payment, String userId) {
         try {
-            PaymentInitiatedEvent event = new PaymentInitiatedEvent();
-            event.setPaymentId(payment.getId());
-            event.setOrderId(payment.getOrder() != null ? payment.getOrder().getId() : null);
-            event.setUserId(userId);
-            event.setAmount(payment.getAmount());
-            event.setTimestamp(LocalDateTime.now());
-            
-            kafkaTemplate.send("payment-initiated", event);
-            log.debug("Published payment initiated event for payment ID: {}", payment.getId());
+            Long orderId = payment.getOrder() != null ? payment.getOrder().getId() : null;
+            eventPublisher.publishPaymentInitiated(payment.getId(), orderId, userId, payment.getAmount(), null);
         } catch (Exception e) {
             log.error("Failed to publish payment initiated event for payment ID: {}", 
                     payment.getId(), e);
@@ -289,39 +279,24 @@ public class PaymentService {
     
     /**
      * Publishes status change events to Kafka
+     * SUCCESS / FAILED go through the outbox in the current transaction, so failures propagate
      * 
      * @param payment Payment entity
      * @param oldStatus Old status
      * @param newStatus New status
      */
     private void publishStatusChangeEvent(Payment payment, String oldStatus, String newStatus) {
-        try {
-            if ("SUCCESS".equals(newStatus)) {
-                PaymentCompletedEvent event = new PaymentCompletedEvent();
-                event.setPaymentId(payment.getId());
-                event.setOrderId(payment.getOrder() != null ? payment.getOrder().getId() : null);
-                event.setUserId(payment.getOrder() != null && payment.getOrder().getUserId() != null 
-                        ? payment.getOrder().getUserId() : null);
-                event.setAmount(payment.getAmount());
-                event.setTimestamp(LocalDateTime.now());
-                
-                kafkaTemplate.send("payment-completed", event);
-                log.debug("Published payment completed event for payment ID: {}", payment.getId());
-                
-            } else if ("FAILED".equals(newStatus) || "CANCELLED".equals(newStatus)) {
-                PaymentFailedEvent event = new PaymentFailedEvent();
-                event.setPaymentId(payment.getId());
-                event.setOrderId(payment.getOrder() != null ? payment.getOrder().getId() : null);
-                event.setUserId(payment.getOrder() != null && payment.getOrder().getUserId() != null 
-                        ? payment.getOrder().getUserId() : null);
-                event.setTimestamp(LocalDateTime.now());
-                
-                kafkaTemplate.send("payment-failed", event);
-                log.debug("Published payment failed event for payment ID: {}", payment.getId());
-            }
-        } catch (Exception e) {
-            log.error("Failed to publish status change event for payment ID: {}", 
-                    payment.getId(), e);
+        Long orderId = payment.getOrder() != null ? payment.getOrder().getId() : null;
+        String userId = payment.getOrder() != null ? payment.getOrder().getUserId() : null;
+
+        if ("SUCCESS".equals(newStatus)) {
+            Integer credits = payment.getOrder() != null && payment.getOrder().getPackageInfo() != null
+                    ? payment.getOrder().getPackageInfo().getCredits() : 0;
+            eventPublisher.publishPaymentCompleted(payment.getId(), orderId, userId, payment.getAmount(),
+                    payment.getCurrency() != null ? payment.getCurrency() : "VND", "PayOS", credits);
+        } else if ("FAILED".equals(newStatus) || "CANCELLED".equals(newStatus)) {
+            eventPublisher.publishPaymentFailed(payment.getId(), orderId, userId,
+                    "Payment status changed from " + oldStatus + " to " + newStatus);
         }
     }
     
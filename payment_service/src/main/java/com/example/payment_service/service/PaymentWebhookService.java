@@ -3,11 +3,8 @@ package com.example.payment_service.service;
 import com.example.payment_service.entity.Payment;
 import com.example.payment_service.entity.PaymentOrder;
 import com.example.payment_service.event.producer.PaymentEventProducer;
-import com.example.payment_service.payos.Webhook;
 import com.example.payment_service.payos.WebhookData;
-import com.example.payment_service.payos.PayOS;
 import com.example.payment_service.repository.PaymentRepository;
-import com.example.payment_service.repository.PaymentOrderRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -15,9 +12,13 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
@@ -26,18 +27,18 @@ import java.util.Optional;
 public class PaymentWebhookService {
     
     private final PaymentRepository paymentRepository;
-    private final PaymentOrderRepository orderRepository;
-    private final PayOS payOS;
+    private final PaymentLookupService paymentLookupService;
     private final PaymentEventProducer eventPublisher;
+    private final PaymentRollupService paymentRollupService;
+    private final PromotionReservationService promotionReservationService;
+    private final OrderViewCache orderViewCache;
     
     /**
      * Handle PayOS webhook for payment status updates
+     * The signature is verified by WebhookSignatureVerifier before this transaction starts
      */
-    public WebhookData handlePaymentWebhook(Webhook webhookBody) {
+    public WebhookData handlePaymentWebhook(WebhookData webhookData) {
         try {
-            // Verify webhook data
-            WebhookData webhookData = payOS.verifyPaymentWebhookData(webhookBody);
-            
             log.info("Processing webhook - code: {}, desc: {}", 
                     webhookData.getCode(), webhookData.getDesc());
             
@@ -49,34 +50,9 @@ public class PaymentWebhookService {
                 return webhookData;
             }
             
-            // Map webhook status to payment status
-            String newStatus = mapWebhookStatus(webhookData.getCode());
-            String oldStatus = payment.getStatus();
-            
-            // Update payment if status changed
-            if (!oldStatus.equals(newStatus)) {
-                payment.setStatus(newStatus);
-
-                // Only update providerTransactionId if not already set or if paymentLinkId is provided
-                if (webhookData.getPaymentLinkId() != null && !webhookData.getPaymentLinkId().isEmpty()) {
-                    payment.setProviderTransactionId(webhookData.getPaymentLinkId());
-                } else if (payment.getProviderTransactionId() == null || payment.getProviderTransactionId().isEmpty()) {
-                    // Fallback to orderCode only if providerTransactionId is not set
-                    payment.setProviderTransactionId(String.valueOf(webhookData.getOrderCode()));
-                }
-                // Otherwise, keep the existing providerTransactionId (PayOS payment link ID)
-
-                if ("SUCCESS".equals(newStatus)) {
-                    handlePaymentSuccess(payment, webhookData);
-                } else if ("FAILED".equals(newStatus) || "CANCELLED".equals(newStatus)) {
-                    handlePaymentFailure(payment, webhookData, newStatus);
-                }
-                
-                paymentRepository.save(payment);
-                
-                // Publish payment status changed event
-                publishPaymentStatusChangedEvent(payment, oldStatus, newStatus);
-            }
+            List<PaymentRollupService.Transition> transitions = new ArrayList<>(1);
+            applyWebhook(payment, webhookData, transitions);
+            paymentRollupService.recordTransitions(transitions);
             
             return webhookData;
             
@@ -86,6 +62,94 @@ public class PaymentWebhookService {
         }
     }
     
+    /**
+     * Handle a micro-batch of verified webhooks in one transaction
+     *
+     * Payments are row-locked and loaded with IN queries (order and package fetch-joined), so
+     * a payment another worker is handling at the same time is only seen after its commit; transitions are
+     * applied in memory in arrival order, and the writes leave at commit: payment/order updates as
+     * JDBC batches (hibernate.jdbc.batch_size), outbox rows as one multi-row insert
+     * (EventDispatcher) and rollup deltas as one netted batch.
+     */
+    public void handlePaymentWebhooks(List<WebhookData> batch) {
+        Long[] paymentIds = new Long[batch.size()];
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Long orderCode = batch.get(i).getOrderCode();
+            if (orderCode != null) {
+                paymentIds[i] = paymentLookupService.findPaymentId(orderCode).orElse(null);
+                if (paymentIds[i] != null) {
+                    ids.add(paymentIds[i]);
+                }
+            }
+        }
+        Map<Long, Payment> payments = new HashMap<>();
+        if (!ids.isEmpty()) {
+            // Lock first so the payments are read under the lock; the fetch join then only adds
+            // the orders to the already managed payments
+            paymentRepository.lockAllByIdIn(ids);
+            for (Payment payment : paymentRepository.findAllWithOrderByIdIn(ids)) {
+                payments.put(payment.getId(), payment);
+            }
+        }
+        
+        List<PaymentRollupService.Transition> transitions = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            WebhookData webhookData = batch.get(i);
+            Payment payment = paymentIds[i] != null ? payments.get(paymentIds[i]) : null;
+            if (payment == null) {
+                // Payments without an orderCode mapping
+                payment = findPaymentFromWebhook(webhookData);
+            }
+            if (payment == null) {
+                log.warn("Payment not found for webhook data: {}", webhookData);
+                continue;
+            }
+            applyWebhook(payment, webhookData, transitions);
+        }
+        paymentRollupService.recordTransitions(transitions);
+        
+        log.info("Processed batch of {} webhooks, {} status changes", batch.size(), transitions.size());
+    }
+    
+    /**
+     * Apply one webhook to its (managed) payment; the rollup change is added to transitions
+     */
+    private void applyWebhook(Payment payment, WebhookData webhookData,
+                              List<PaymentRollupService.Transition> transitions) {
+        // Map webhook status to payment status
+        String newStatus = mapWebhookStatus(webhookData.getCode());
+        String oldStatus = payment.getStatus();
+        
+        // Update payment if status changed
+        if (oldStatus.equals(newStatus)) {
+            return;
+        }
+        LocalDate oldBucketDate = paymentRollupService.bucketDate(payment);
+        payment.setStatus(newStatus);
+
+        // Only update providerTransactionId if not already set or if paymentLinkId is provided
+        if (webhookData.getPaymentLinkId() != null && !webhookData.getPaymentLinkId().isEmpty()) {
+            payment.setProviderTransactionId(webhookData.getPaymentLinkId());
+        } else if (payment.getProviderTransactionId() == null || payment.getProviderTransactionId().isEmpty()) {
+            // Fallback to orderCode only if providerTransactionId is not set
+            payment.setProviderTransactionId(String.valueOf(webhookData.getOrderCode()));
+        }
+        // Otherwise, keep the existing providerTransactionId (PayOS payment link ID)
+
+        if ("SUCCESS".equals(newStatus)) {
+            handlePaymentSuccess(payment, webhookData);
+        } else if ("FAILED".equals(newStatus) || "CANCELLED".equals(newStatus)) {
+            handlePaymentFailure(payment, webhookData, newStatus);
+        }
+        
+        // Managed entity - the update is flushed (batched) at commit
+        transitions.add(paymentRollupService.transition(payment, oldStatus, oldBucketDate));
+        
+        // Publish payment status changed event
+        publishPaymentStatusChangedEvent(payment, oldStatus, newStatus);
+    }
+    
     /**
      * Handle successful payment
      */
@@ -96,7 +160,10 @@ public class PaymentWebhookService {
         PaymentOrder order = payment.getOrder();
         if (order != null && "PENDING".equals(order.getStatus())) {
             order.setStatus("COMPLETED");
-            orderRepository.save(order);
+        }
+        if (order != null) {
+            promotionReservationService.commitForOrder(order.getId());
+            orderViewCache.invalidateAfterCommit(order.getId());
         }
         
         // Publish payment completed event
@@ -114,7 +181,8 @@ public class PaymentWebhookService {
         PaymentOrder order = payment.getOrder();
         if (order != null && "PENDING".equals(order.getStatus())) {
             order.setStatus(status);
-            orderRepository.save(order);
+            promotionReservationService.releaseForOrder(order.getId());
+            orderViewCache.invalidateAfterCommit(order.getId());
         }
         
         // Publish payment failed event
@@ -122,50 +190,38 @@ public class PaymentWebhookService {
     }
     
     /**
-     * Find payment from webhook data
+     * Find payment from webhook data, row-locked for the status change
+     * Uses only indexed lookups - never scans pending payments
      */
     private Payment findPaymentFromWebhook(WebhookData webhookData) {
-        // Try to find by payment link ID first (most reliable)
+        // orderCode -> payment id mapping written at link creation (cached)
+        Optional<Long> paymentId = paymentLookupService.findPaymentId(webhookData.getOrderCode());
+        if (paymentId.isPresent()) {
+            Optional<Payment> payment = paymentRepository.lockAllByIdIn(List.of(paymentId.get())).stream().findFirst();
+            if (payment.isPresent()) {
+                log.debug("Found payment by orderCode mapping: {}", webhookData.getOrderCode());
+                return payment.get();
+            }
+        }
+
+        // Payments created before the mapping existed: match on indexed provider_transaction_id
         if (webhookData.getPaymentLinkId() != null && !webhookData.getPaymentLinkId().isEmpty()) {
-            Optional<Payment> payment = paymentRepository.findByProviderTransactionId(webhookData.getPaymentLinkId());
+            Optional<Payment> payment = paymentRepository.lockByProviderTransactionId(webhookData.getPaymentLinkId());
             if (payment.isPresent()) {
                 log.debug("Found payment by paymentLinkId: {}", webhookData.getPaymentLinkId());
                 return payment.get();
             }
         }
 
-        // Fallback: Try to find by order code
         if (webhookData.getOrderCode() != null) {
             String orderCode = String.valueOf(webhookData.getOrderCode());
-            Optional<Payment> payment = paymentRepository.findByProviderTransactionId(orderCode);
+            Optional<Payment> payment = paymentRepository.lockByProviderTransactionId(orderCode);
             if (payment.isPresent()) {
                 log.debug("Found payment by orderCode: {}", orderCode);
                 return payment.get();
             }
         }
 
-        // Last resort: Find pending payment that matches the description or amount
-        if (webhookData.getOrderCode() != null && webhookData.getAmount() != null) {
-            log.debug("Searching for pending payment by orderCode substring and amount");
-            String orderCodeStr = String.valueOf(webhookData.getOrderCode());
-
-            return paymentRepository.findByStatus("PENDING").stream()
-                    .filter(p -> {
-                        // Check if transaction code contains part of order code
-                        boolean codeMatch = p.getTransactionCode() != null &&
-                                          orderCodeStr.length() >= 8 &&
-                                          p.getTransactionCode().contains(orderCodeStr.substring(0, 8));
-
-                        // Check if amount matches (convert to same scale)
-                        boolean amountMatch = p.getAmount() != null &&
-                                            p.getAmount().multiply(new java.math.BigDecimal("100")).intValue() == webhookData.getAmount();
-
-                        return codeMatch || amountMatch;
-                    })
-                    .findFirst()
-                    .orElse(null);
-        }
-
         log.warn("Payment not found for webhook - paymentLinkId: {}, orderCode: {}",
                 webhookData.getPaymentLinkId(), webhookData.getOrderCode());
         return null;
@@ -0,0 +1,259 @@
+package com.example.payment_service.service;
+
+import com.example.payment_service.entity.Promotion;
+import com.example.payment_service.repository.PromotionRepository;
+import com.example.payment_service.repository.PromotionUsageRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory promotion rules, usage counters and per-user usage counts
+ *
+ * - Rules: active, unexpired promotions indexed by code in an immutable map, swapped on refresh
+ *   (after a promotion is created here, and every payment.promotion.index.refresh-ms for changes
+ *   made elsewhere).
+ * - Usage counters: one AtomicInteger per promotion, resynced from current_uses on refresh.
+ *   A code that is known to be used up is rejected without a query; the database stays the
+ *   authority through a conditional UPDATE ... WHERE current_uses < max_uses, so the cap holds
+ *   across replicas and concurrent requests.
+ * - Per-user counts: a bounded cache of (promotion, user) usage counts, loaded once per key and
+ *   incremented when a usage commits. It only serves validation; reservations re-count in the
+ *   database under the promotion row lock (lockedUserUsageCount).
+ *
+ * PromotionReservationService gives uses back (recordRelease) when a reservation is released.
+ */
+@Component
+@Slf4j
+public class PromotionEngine {
+
+    private final PromotionRepository promotionRepository;
+    private final PromotionUsageRepository usageRepository;
+
+    private volatile Map<String, Rule> rulesByCode = Map.of();
+    private final Map<Long, AtomicInteger> usesByPromotion = new ConcurrentHashMap<>();
+    private final Cache<UserUsageKey, AtomicInteger> userUsages;
+
+    public PromotionEngine(PromotionRepository promotionRepository,
+                           PromotionUsageRepository usageRepository,
+                           @Value("${payment.promotion.user-usage-cache.max-size:100000}") long userCacheSize,
+                           @Value("${payment.promotion.user-usage-cache.ttl-minutes:30}") long userCacheTtlMinutes) {
+        this.promotionRepository = promotionRepository;
+        this.usageRepository = usageRepository;
+        this.userUsages = Caffeine.newBuilder()
+                .maximumSize(userCacheSize)
+                .expireAfterWrite(Duration.ofMinutes(userCacheTtlMinutes))
+                .build();
+    }
+
+    /**
+     * Immutable copy of the fields needed to evaluate a promotion
+     */
+    public record Rule(Long id, String code, String name, String discountType, BigDecimal discountValue,
+                       BigDecimal minAmount, BigDecimal maxDiscount, Integer maxUses, Integer maxUsesPerUser,
+                       LocalDateTime validFrom, LocalDateTime validTo) {
+
+        static Rule of(Promotion promotion) {
+            return new Rule(promotion.getId(), promotion.getCode(), promotion.getName(),
+                    promotion.getDiscountType(), promotion.getDiscountValue(), promotion.getMinAmount(),
+                    promotion.getMaxDiscount(), promotion.getMaxUses(), promotion.getMaxUsesPerUser(),
+                    promotion.getValidFrom(), promotion.getValidTo());
+        }
+    }
+
+    private record UserUsageKey(Long promotionId, String userId) {
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            // Index stays empty until the next scheduled refresh
+            log.error("Failed to load promotion rules: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reload rules and resync usage counters from the database
+     */
+    @Scheduled(fixedDelayString = "${payment.promotion.index.refresh-ms:30000}",
+               initialDelayString = "${payment.promotion.index.refresh-ms:30000}")
+    public void refresh() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Promotion> promotions = promotionRepository.findByIsActiveTrueAndValidToAfter(now);
+
+        Map<String, Rule> rules = new HashMap<>();
+        for (Promotion promotion : promotions) {
+            rules.put(promotion.getCode(), Rule.of(promotion));
+            int uses = promotion.getCurrentUses() != null ? promotion.getCurrentUses() : 0;
+            usesByPromotion.computeIfAbsent(promotion.getId(), id -> new AtomicInteger()).set(uses);
+        }
+        usesByPromotion.keySet().retainAll(rules.values().stream().map(Rule::id).toList());
+        rulesByCode = Map.copyOf(rules);
+        log.debug("Loaded {} promotion rules", rules.size());
+    }
+
+    /**
+     * Refresh once the current transaction commits (e.g. after a promotion was created)
+     */
+    public void refreshAfterCommit() {
+        TransactionUtils.afterCommit(this::refresh);
+    }
+
+    public Optional<Rule> findRule(String code) {
+        return Optional.ofNullable(code != null ? rulesByCode.get(code) : null);
+    }
+
+    /**
+     * Uses known to this instance - never more than the database count
+     */
+    public int knownUses(Rule rule) {
+        AtomicInteger uses = usesByPromotion.get(rule.id());
+        return uses != null ? uses.get() : 0;
+    }
+
+    public boolean isExhausted(Rule rule) {
+        return rule.maxUses() != null && knownUses(rule) >= rule.maxUses();
+    }
+
+    /**
+     * Atomically take one use of the promotion in the current transaction
+     *
+     * @return false if the promotion is used up (checked against the database, not the local counter)
+     */
+    public boolean tryConsume(Rule rule) {
+        if (isExhausted(rule)) {
+            return false;
+        }
+        if (promotionRepository.tryIncrementUses(rule.id()) == 0) {
+            // Someone else took the last use - remember it so later attempts skip the query
+            if (rule.maxUses() != null) {
+                usesByPromotion.computeIfAbsent(rule.id(), id -> new AtomicInteger())
+                        .accumulateAndGet(rule.maxUses(), Math::max);
+            }
+            return false;
+        }
+        TransactionUtils.afterCommit(() -> usesByPromotion.computeIfAbsent(rule.id(), id -> new AtomicInteger()).incrementAndGet());
+        return true;
+    }
+
+    /**
+     * How many times the user has used the promotion - one count query per (promotion, user)
+     */
+    public int userUsageCount(Rule rule, String userId) {
+        if (userId == null) {
+            return 0;
+        }
+        return userUsages.get(new UserUsageKey(rule.id(), userId),
+                key -> new AtomicInteger(usageRepository.countByPromotionIdAndUserId(key.promotionId(), key.userId())))
+                .get();
+    }
+
+    /**
+     * The user's usage count read from the database, for a transaction that already holds the
+     * promotion row lock (tryConsume) - other reservations of the promotion wait for it, so the
+     * count cannot go stale before commit. The cached count is corrected on the way.
+     */
+    public int lockedUserUsageCount(Rule rule, String userId) {
+        if (rule.maxUsesPerUser() == null || userId == null) {
+            return 0;
+        }
+        int count = usageRepository.countByPromotionIdAndUserId(rule.id(), userId);
+        userUsages.put(new UserUsageKey(rule.id(), userId), new AtomicInteger(count));
+        return count;
+    }
+
+    /**
+     * Usage counts of the user for several promotions, keyed by promotion id - cached counts are
+     * reused and the missing ones are loaded with a single grouped query
+     */
+    public Map<Long, Integer> userUsageCounts(Collection<Rule> rules, String userId) {
+        Map<Long, Integer> counts = new HashMap<>();
+        if (userId == null) {
+            return counts;
+        }
+        List<Long> missing = new ArrayList<>();
+        for (Rule rule : rules) {
+            AtomicInteger cached = userUsages.getIfPresent(new UserUsageKey(rule.id(), userId));
+            if (cached != null) {
+                counts.put(rule.id(), cached.get());
+            } else {
+                missing.add(rule.id());
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<Long, Integer> loaded = new HashMap<>();
+            for (Object[] row : usageRepository.countByUserIdGroupByPromotion(userId, missing)) {
+                loaded.put((Long) row[0], ((Number) row[1]).intValue());
+            }
+            for (Long promotionId : missing) {
+                int count = loaded.getOrDefault(promotionId, 0);
+                // Keep a count that was cached concurrently - it may already include a newer usage
+                counts.put(promotionId, userUsages.get(new UserUsageKey(promotionId, userId),
+                        key -> new AtomicInteger(count)).get());
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Count a usage for the user once the current transaction commits
+     */
+    public void recordUserUsage(Rule rule, String userId) {
+        TransactionUtils.afterCommit(() -> {
+            AtomicInteger count = userUsages.getIfPresent(new UserUsageKey(rule.id(), userId));
+            if (count != null) {
+                count.incrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Give back a use and the user's count once the release of a reservation commits
+     */
+    public void recordRelease(Long promotionId, String userId) {
+        TransactionUtils.afterCommit(() -> {
+            AtomicInteger uses = usesByPromotion.get(promotionId);
+            if (uses != null) {
+                uses.updateAndGet(v -> Math.max(0, v - 1));
+            }
+            AtomicInteger count = userUsages.getIfPresent(new UserUsageKey(promotionId, userId));
+            if (count != null) {
+                count.updateAndGet(v -> Math.max(0, v - 1));
+            }
+        });
+    }
+
+    /**
+     * Count a use taken back for a reservation that was released before its payment succeeded
+     */
+    public void recordRetake(Long promotionId, String userId) {
+        TransactionUtils.afterCommit(() -> {
+            AtomicInteger uses = usesByPromotion.get(promotionId);
+            if (uses != null) {
+                uses.incrementAndGet();
+            }
+            AtomicInteger count = userUsages.getIfPresent(new UserUsageKey(promotionId, userId));
+            if (count != null) {
+                count.incrementAndGet();
+            }
+        });
+    }
+}
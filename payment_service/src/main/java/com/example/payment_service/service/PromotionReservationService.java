@@ -0,0 +1,187 @@
+package com.example.payment_service.service;
+
+import com.example.payment_service.entity.PromotionUsage;
+import com.example.payment_service.repository.PromotionRepository;
+import com.example.payment_service.repository.PromotionUsageRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * Two-phase promotion usage: a slot is RESERVED when the order is created and becomes
+ * COMMITTED when its payment succeeds, or RELEASED when the payment fails, is cancelled
+ * or the reservation expires.
+ *
+ * Expiry runs on an in-memory TimingWheel keyed by usage id (reloaded from the table at startup),
+ * so there is no periodic scan. Every transition is a conditional UPDATE ... WHERE status = 'RESERVED',
+ * so a late webhook racing the expiry wheel applies exactly once; a payment that succeeds after
+ * its reservation was released takes the use back.
+ */
+@Service
+@Slf4j
+public class PromotionReservationService {
+
+    static final String RESERVED = "RESERVED";
+    static final String COMMITTED = "COMMITTED";
+    static final String RELEASED = "RELEASED";
+
+    private final PromotionUsageRepository usageRepository;
+    private final PromotionRepository promotionRepository;
+    private final PromotionEngine promotionEngine;
+    private final TransactionTemplate transactionTemplate;
+    private final long ttlMinutes;
+    private final TimingWheel<Long> expiryWheel;
+
+    public PromotionReservationService(PromotionUsageRepository usageRepository,
+                                       PromotionRepository promotionRepository,
+                                       PromotionEngine promotionEngine,
+                                       TransactionTemplate transactionTemplate,
+                                       @Value("${payment.promotion.reservation.ttl-minutes:20}") long ttlMinutes,
+                                       @Value("${payment.promotion.reservation.wheel.tick-ms:1000}") long tickMillis,
+                                       @Value("${payment.promotion.reservation.wheel.size:512}") int wheelSize) {
+        this.usageRepository = usageRepository;
+        this.promotionRepository = promotionRepository;
+        this.promotionEngine = promotionEngine;
+        this.transactionTemplate = transactionTemplate;
+        this.ttlMinutes = ttlMinutes;
+        this.expiryWheel = new TimingWheel<>("promotion-reservation-expiry", tickMillis, wheelSize, this::releaseExpired);
+    }
+
+    @PostConstruct
+    public void start() {
+        expiryWheel.start();
+        try {
+            List<Object[]> pending = usageRepository.findReservedDeadlines();
+            for (Object[] row : pending) {
+                Long id = (Long) row[0];
+                LocalDateTime expiresAt = toLocalDateTime(row[1]);
+                // Reservations without a deadline are released on the next tick
+                expiryWheel.schedule(id, expiresAt != null ? toEpochMillis(expiresAt) : 0L);
+            }
+            log.info("Loaded {} pending promotion reservations", pending.size());
+        } catch (Exception e) {
+            log.error("Failed to load pending promotion reservations: {}", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        expiryWheel.stop();
+    }
+
+    /**
+     * Deadline for a reservation created now
+     */
+    public LocalDateTime newExpiry() {
+        return LocalDateTime.now().plusMinutes(ttlMinutes);
+    }
+
+    /**
+     * Start the expiry timer once the reservation's transaction commits
+     */
+    public void track(PromotionUsage usage) {
+        Long id = usage.getId();
+        long deadline = toEpochMillis(usage.getExpiresAt());
+        TransactionUtils.afterCommit(() -> expiryWheel.schedule(id, deadline));
+    }
+
+    /**
+     * Payment succeeded - keep the order's promotion use
+     */
+    @Transactional(propagation = Propagation.REQUIRED)
+    public void commitForOrder(Long orderId) {
+        for (PromotionUsage usage : usageRepository.findByOrderId(orderId)) {
+            if (!RESERVED.equals(usage.getStatus()) && !RELEASED.equals(usage.getStatus())) {
+                continue;
+            }
+            if (usageRepository.completeReservation(usage.getId(), COMMITTED) == 1) {
+                cancelTimerAfterCommit(usage.getId());
+                log.info("Promotion reservation committed: usageId={}, orderId={}", usage.getId(), orderId);
+            } else if (usageRepository.reclaimReservation(usage.getId()) == 1) {
+                retake(usage, orderId);
+            }
+        }
+    }
+
+    /**
+     * Payment failed, was cancelled or timed out - give the order's promotion use back
+     */
+    @Transactional(propagation = Propagation.REQUIRED)
+    public void releaseForOrder(Long orderId) {
+        for (PromotionUsage usage : usageRepository.findByOrderId(orderId)) {
+            if (RESERVED.equals(usage.getStatus()) && release(usage)) {
+                cancelTimerAfterCommit(usage.getId());
+                log.info("Promotion reservation released: usageId={}, orderId={}", usage.getId(), orderId);
+            }
+        }
+    }
+
+    public int pendingReservations() {
+        return expiryWheel.size();
+    }
+
+    /**
+     * Wheel callback: release every expired reservation of this tick in one transaction
+     */
+    private void releaseExpired(List<Long> usageIds) {
+        Integer released = transactionTemplate.execute(status -> {
+            int count = 0;
+            for (PromotionUsage usage : usageRepository.findAllById(usageIds)) {
+                if (RESERVED.equals(usage.getStatus()) && release(usage)) {
+                    count++;
+                }
+            }
+            return count;
+        });
+        log.info("Expired {} of {} promotion reservations", released, usageIds.size());
+    }
+
+    private boolean release(PromotionUsage usage) {
+        if (usageRepository.completeReservation(usage.getId(), RELEASED) == 0) {
+            return false;
+        }
+        Long promotionId = usage.getPromotion().getId();
+        promotionRepository.decrementUses(promotionId);
+        promotionEngine.recordRelease(promotionId, usage.getUserId());
+        return true;
+    }
+
+    /**
+     * The payment succeeded after its reservation was released - the discount was already
+     * granted, so the use is taken back even if that goes over max_uses
+     */
+    private void retake(PromotionUsage usage, Long orderId) {
+        Long promotionId = usage.getPromotion().getId();
+        if (promotionRepository.tryIncrementUses(promotionId) == 0) {
+            promotionRepository.forceIncrementUses(promotionId);
+            log.warn("Promotion {} exceeded max uses by a late payment on order {}", promotionId, orderId);
+        }
+        promotionEngine.recordRetake(promotionId, usage.getUserId());
+        log.warn("Promotion reservation {} was released before its payment succeeded, committed again", usage.getId());
+    }
+
+    private void cancelTimerAfterCommit(Long usageId) {
+        TransactionUtils.afterCommit(() -> expiryWheel.cancel(usageId));
+    }
+
+    private static LocalDateTime toLocalDateTime(Object value) {
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime();
+        }
+        return (LocalDateTime) value;
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
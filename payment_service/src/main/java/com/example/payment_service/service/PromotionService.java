@@ -1,5 +1,6 @@
 package com.example.payment_service.service;
 
+import com.example.payment_service.dto.response.PromotionValidationResponse;
 import com.example.payment_service.entity.Promotion;
 import com.example.payment_service.entity.PromotionUsage;
 import com.example.payment_service.entity.PaymentOrder;
@@ -13,7 +14,10 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -21,21 +25,32 @@ import java.util.List;
 @Transactional
 public class PromotionService {
     
+    private static final String USER_LIMIT_REACHED = "You have reached the usage limit for this promotion";
+    
     private final PromotionRepository promotionRepository;
     private final PromotionUsageRepository usageRepository;
+    private final PromotionEngine promotionEngine;
+    private final PromotionReservationService reservationService;
     
     /**
      * Validate and apply promotion code to an order
+     * Evaluated against PromotionEngine's in-memory rules; no query once the user's count is cached
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public BigDecimal applyPromotion(String promotionCode, String userId, BigDecimal orderAmount) {
-        Promotion promotion = promotionRepository.findByCode(promotionCode)
-                .orElseThrow(() -> new RuntimeException("Promotion not found: " + promotionCode));
+        PromotionEngine.Rule rule = getPromotionRule(promotionCode);
         
         // Validate promotion
-        validatePromotion(promotion, userId, orderAmount);
+        String rejection = rejectionReason(rule, orderAmount, LocalDateTime.now());
+        if (rejection == null && exceedsUserLimit(rule, promotionEngine.userUsageCount(rule, userId))) {
+            rejection = USER_LIMIT_REACHED;
+        }
+        if (rejection != null) {
+            throw new IllegalStateException(rejection);
+        }
         
         // Calculate discount
-        BigDecimal discountAmount = calculateDiscount(promotion, orderAmount);
+        BigDecimal discountAmount = calculateDiscount(rule, orderAmount);
         
         log.info("Promotion applied: code={}, userId={}, discount={}", 
                 promotionCode, userId, discountAmount);
@@ -44,87 +59,146 @@ public class PromotionService {
     }
     
     /**
-     * Record promotion usage in a separate transaction to avoid rollback issues
+     * Evaluate every code against every amount for one user (codes x amounts results, code-major)
+     * Rules come from the in-memory index and the user's counts from one grouped query for the
+     * whole batch; rejections are returned as invalid results instead of exceptions
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<PromotionValidationResponse> validatePromotions(List<String> codes, String userId,
+                                                                List<BigDecimal> amounts) {
+        Map<String, PromotionEngine.Rule> rules = new LinkedHashMap<>();
+        for (String code : codes) {
+            promotionEngine.findRule(code).ifPresent(rule -> rules.putIfAbsent(code, rule));
+        }
+        List<PromotionEngine.Rule> perUserLimited = rules.values().stream()
+                .filter(rule -> rule.maxUsesPerUser() != null)
+                .toList();
+        Map<Long, Integer> userCounts = perUserLimited.isEmpty()
+                ? Map.of() : promotionEngine.userUsageCounts(perUserLimited, userId);
+        
+        LocalDateTime now = LocalDateTime.now();
+        List<PromotionValidationResponse> results = new ArrayList<>(codes.size() * amounts.size());
+        for (String code : codes) {
+            PromotionEngine.Rule rule = rules.get(code);
+            for (BigDecimal amount : amounts) {
+                String rejection = rule == null ? "Promotion not found or no longer active: " + code
+                        : rejectionReason(rule, amount, now);
+                if (rejection == null && exceedsUserLimit(rule, userCounts.getOrDefault(rule.id(), 0))) {
+                    rejection = USER_LIMIT_REACHED;
+                }
+                results.add(PromotionValidationResponse.builder()
+                        .valid(rejection == null)
+                        .message(rejection == null ? "Promotion is valid" : rejection)
+                        .discountAmount(rejection == null ? calculateDiscount(rule, amount) : BigDecimal.ZERO)
+                        .bonusCredits(null) // TODO: Add bonus credits logic if needed
+                        .promotionCode(code)
+                        .promotionName(rejection == null ? rule.name() : null)
+                        .amount(amount)
+                        .build());
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Reserve a promotion use for the order in the caller's transaction
+     * The use is taken with a conditional UPDATE, so max uses cannot be exceeded under concurrency;
+     * that UPDATE holds the promotion row lock until commit, so the per-user count read after it is
+     * exact across replicas. PromotionReservationService commits or releases it when the payment completes
      */
     @Transactional(propagation = Propagation.REQUIRED)
-    public PromotionUsage recordPromotionUsage(String promotionCode, String userId,
+    public PromotionUsage reservePromotion(String promotionCode, String userId,
                                                  PaymentOrder order, BigDecimal discountAmount) {
-        Promotion promotion = promotionRepository.findByCode(promotionCode)
-                .orElseThrow(() -> new RuntimeException("Promotion not found: " + promotionCode));
+        PromotionEngine.Rule rule = getPromotionRule(promotionCode);
+        
+        if (!promotionEngine.tryConsume(rule)) {
+            throw new IllegalStateException("Promotion has reached maximum usage limit");
+        }
+        // The cached count only serves validation; this one is authoritative
+        if (exceedsUserLimit(rule, promotionEngine.lockedUserUsageCount(rule, userId))) {
+            throw new IllegalStateException(USER_LIMIT_REACHED);
+        }
         
         PromotionUsage usage = PromotionUsage.builder()
-                .promotion(promotion)
+                .promotion(promotionRepository.getReferenceById(rule.id()))
                 .userId(userId)
                 .order(order)
                 .discountAmount(discountAmount)
+                .status(PromotionReservationService.RESERVED)
+                .expiresAt(reservationService.newExpiry())
                 .build();
         
         usage = usageRepository.save(usage);
+        promotionEngine.recordUserUsage(rule, userId);
+        reservationService.track(usage);
         
-        // Update promotion usage count
-        promotion.setCurrentUses(promotion.getCurrentUses() + 1);
-        promotionRepository.save(promotion);
-        
-        log.info("Promotion usage recorded: code={}, userId={}, orderId={}", 
-                promotionCode, userId, order.getId());
+        log.info("Promotion reserved: code={}, userId={}, orderId={}, expiresAt={}", 
+                promotionCode, userId, order.getId(), usage.getExpiresAt());
         
         return usage;
     }
     
     /**
-     * Validate promotion
+     * Active promotion rule by code, from the in-memory index
      */
-    private void validatePromotion(Promotion promotion, String userId, BigDecimal orderAmount) {
-        LocalDateTime now = LocalDateTime.now();
-        
-        // Check if active
-        if (!promotion.getIsActive()) {
-            throw new IllegalStateException("Promotion is not active");
-        }
-        
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public PromotionEngine.Rule getPromotionRule(String promotionCode) {
+        return promotionEngine.findRule(promotionCode)
+                .orElseThrow(() -> new RuntimeException("Promotion not found or no longer active: " + promotionCode));
+    }
+    
+    /**
+     * Validate promotion, except the per-user limit
+     *
+     * @return why the promotion cannot be applied, or null if it can
+     */
+    private String rejectionReason(PromotionEngine.Rule rule, BigDecimal orderAmount, LocalDateTime now) {
         // Check validity period
-        if (now.isBefore(promotion.getValidFrom()) || now.isAfter(promotion.getValidTo())) {
-            throw new IllegalStateException("Promotion is not valid at this time");
+        if (now.isBefore(rule.validFrom()) || now.isAfter(rule.validTo())) {
+            return "Promotion is not valid at this time";
         }
         
         // Check minimum amount
-        if (promotion.getMinAmount() != null && orderAmount.compareTo(promotion.getMinAmount()) < 0) {
-            throw new IllegalStateException("Order amount does not meet minimum requirement");
+        if (rule.minAmount() != null && orderAmount.compareTo(rule.minAmount()) < 0) {
+            return "Order amount does not meet minimum requirement";
         }
         
         // Check max uses
-        if (promotion.getMaxUses() != null && promotion.getCurrentUses() >= promotion.getMaxUses()) {
-            throw new IllegalStateException("Promotion has reached maximum usage limit");
+        if (promotionEngine.isExhausted(rule)) {
+            return "Promotion has reached maximum usage limit";
         }
         
-        // Check user usage limit
-        int userUsageCount = usageRepository.countByPromotionIdAndUserId(promotion.getId(), userId);
-        if (promotion.getMaxUsesPerUser() != null && userUsageCount >= promotion.getMaxUsesPerUser()) {
-            throw new IllegalStateException("You have reached the usage limit for this promotion");
-        }
+        return null;
+    }
+    
+    /**
+     * Check user usage limit
+     */
+    private static boolean exceedsUserLimit(PromotionEngine.Rule rule, int userUsageCount) {
+        return rule.maxUsesPerUser() != null && userUsageCount >= rule.maxUsesPerUser();
     }
     
     /**
      * Calculate discount amount
      */
-    private BigDecimal calculateDiscount(Promotion promotion, BigDecimal orderAmount) {
+    private BigDecimal calculateDiscount(PromotionEngine.Rule rule, BigDecimal orderAmount) {
         BigDecimal discount;
         
-        switch (promotion.getDiscountType()) {
+        switch (rule.discountType()) {
             case "PERCENTAGE":
-                discount = orderAmount.multiply(promotion.getDiscountValue())
+                discount = orderAmount.multiply(rule.discountValue())
                         .divide(BigDecimal.valueOf(100));
                 break;
             case "FIXED":
-                discount = promotion.getDiscountValue();
+                discount = rule.discountValue();
                 break;
             default:
                 discount = BigDecimal.ZERO;
         }
         
         // Apply max discount limit if specified
-        if (promotion.getMaxDiscount() != null && discount.compareTo(promotion.getMaxDiscount()) > 0) {
-            discount = promotion.getMaxDiscount();
+        if (rule.maxDiscount() != null && discount.compareTo(rule.maxDiscount()) > 0) {
+            discount = rule.maxDiscount();
         }
         
         return discount;
@@ -150,7 +224,9 @@ public class PromotionService {
      * Create new promotion
      */
     public Promotion createPromotion(Promotion promotion) {
-        return promotionRepository.save(promotion);
+        Promotion saved = promotionRepository.save(promotion);
+        promotionEngine.refreshAfterCommit();
+        return saved;
     }
     
     /**
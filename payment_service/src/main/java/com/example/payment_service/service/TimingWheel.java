@@ -0,0 +1,201 @@
+package com.example.payment_service.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Hierarchical timing wheel for in-memory deadlines
+ *
+ * schedule and cancel are O(1) and never touch the buckets: new deadlines are queued and placed
+ * by the single wheel thread, which advances every tick and only looks at the bucket for that tick.
+ * Level 0 has one bucket per tick; each level above has buckets wheelSize times as wide. A deadline
+ * is placed on the lowest level that reaches it and moves down a level when its bucket comes up,
+ * so far deadlines are touched once per level instead of once per revolution. Resolution is one
+ * tick; expired keys are handed to the callback in one batch per tick, on the wheel thread.
+ *
+ * Deadlines are kept in memory only - owners reload pending ones at startup.
+ */
+@Slf4j
+public class TimingWheel<K> {
+
+    private final String name;
+    private final long tickMillis;
+    private final int wheelSize;
+    // Only touched by the wheel thread; levels are added when a deadline needs one
+    private final List<Level<K>> levels = new ArrayList<>();
+    private final Map<K, Long> deadlines = new ConcurrentHashMap<>();
+    private final Queue<Entry<K>> scheduled = new ConcurrentLinkedQueue<>();
+    private final Consumer<List<K>> onExpired;
+    private final ScheduledExecutorService ticker;
+    private final LongSupplier clock;
+    private long lastTick;
+
+    public TimingWheel(String name, long tickMillis, int wheelSize, Consumer<List<K>> onExpired) {
+        this(name, tickMillis, wheelSize, onExpired, System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock epoch millis; tests drive the wheel with their own clock and advance()
+     */
+    TimingWheel(String name, long tickMillis, int wheelSize, Consumer<List<K>> onExpired, LongSupplier clock) {
+        this.name = name;
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.levels.add(new Level<>(1, wheelSize));
+        this.onExpired = onExpired;
+        this.clock = clock;
+        this.lastTick = clock.getAsLong() / tickMillis;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        lastTick = clock.getAsLong() / tickMillis;
+        ticker.scheduleAtFixedRate(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        ticker.shutdownNow();
+    }
+
+    /**
+     * Schedule (or reschedule) a key to expire at the given epoch millis
+     */
+    public void schedule(K key, long deadlineMillis) {
+        deadlines.put(key, deadlineMillis);
+        scheduled.add(new Entry<>(key, deadlineMillis));
+    }
+
+    /**
+     * Cancel a pending deadline; its bucket entry is dropped lazily when the wheel reaches it
+     */
+    public void cancel(K key) {
+        deadlines.remove(key);
+    }
+
+    public int size() {
+        return deadlines.size();
+    }
+
+    /**
+     * One tick of the wheel thread
+     */
+    void advance() {
+        try {
+            long now = clock.getAsLong();
+            long currentTick = now / tickMillis;
+            List<K> expired = new ArrayList<>();
+
+            // Place newly scheduled deadlines; ones already due go into the current bucket
+            for (Entry<K> entry; (entry = scheduled.poll()) != null; ) {
+                place(entry, currentTick);
+            }
+
+            // Move deadlines down from every upper bucket whose span started since the last run,
+            // highest level first (bounded by one revolution per level)
+            for (int level = levels.size() - 1; level > 0; level--) {
+                Level<K> wheel = levels.get(level);
+                long toSlot = currentTick / wheel.span;
+                long fromSlot = Math.max(lastTick / wheel.span + 1, toSlot - wheelSize + 1);
+                for (long slot = fromSlot; slot <= toSlot; slot++) {
+                    List<Entry<K>> bucket = wheel.bucket(slot * wheel.span);
+                    if (bucket.isEmpty()) {
+                        continue;
+                    }
+                    List<Entry<K>> cascading = new ArrayList<>(bucket);
+                    bucket.clear();
+                    for (Entry<K> entry : cascading) {
+                        if (isCurrent(entry)) {
+                            place(entry, currentTick);
+                        }
+                    }
+                }
+            }
+
+            // Catch up on every tick since the last run (bounded by one revolution)
+            Level<K> ticks = levels.get(0);
+            long from = Math.max(lastTick + 1, currentTick - wheelSize + 1);
+            for (long tick = from; tick <= currentTick; tick++) {
+                Iterator<Entry<K>> it = ticks.bucket(tick).iterator();
+                while (it.hasNext()) {
+                    Entry<K> entry = it.next();
+                    if (!isCurrent(entry)) {
+                        // Cancelled or rescheduled
+                        it.remove();
+                    } else if (entry.deadlineMillis() / tickMillis <= currentTick) {
+                        it.remove();
+                        if (deadlines.remove(entry.key(), entry.deadlineMillis())) {
+                            expired.add(entry.key());
+                        }
+                    }
+                }
+            }
+            lastTick = currentTick;
+
+            if (!expired.isEmpty()) {
+                onExpired.accept(expired);
+            }
+        } catch (Exception e) {
+            log.error("Timing wheel {} tick failed: {}", name, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Put the entry on the lowest level whose revolution reaches its deadline
+     * On level n > 0 the deadline is at least one slot ahead, so its bucket is moved down before it is due
+     */
+    private void place(Entry<K> entry, long currentTick) {
+        long delay = Math.max(entry.deadlineMillis() / tickMillis - currentTick, 0);
+        int level = 0;
+        long maxSpan = Long.MAX_VALUE / wheelSize / wheelSize;
+        while (delay >= levels.get(level).span * wheelSize && levels.get(level).span <= maxSpan) {
+            level++;
+            if (level == levels.size()) {
+                levels.add(new Level<>(levels.get(level - 1).span * wheelSize, wheelSize));
+            }
+        }
+        levels.get(level).bucket(currentTick + delay).add(entry);
+    }
+
+    private boolean isCurrent(Entry<K> entry) {
+        Long deadline = deadlines.get(entry.key());
+        return deadline != null && deadline == entry.deadlineMillis();
+    }
+
+    private static final class Level<K> {
+        // Ticks per bucket
+        final long span;
+        final List<Entry<K>>[] buckets;
+
+        @SuppressWarnings("unchecked")
+        Level(long span, int wheelSize) {
+            this.span = span;
+            this.buckets = new List[wheelSize];
+            for (int i = 0; i < wheelSize; i++) {
+                buckets[i] = new ArrayList<>();
+            }
+        }
+
+        List<Entry<K>> bucket(long tick) {
+            return buckets[(int) Math.floorMod(tick / span, (long) buckets.length)];
+        }
+    }
+
+    private record Entry<K>(K key, long deadlineMillis) {
+    }
+}
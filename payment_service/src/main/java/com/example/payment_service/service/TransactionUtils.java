@@ -0,0 +1,30 @@
+package com.example.payment_service.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Helpers for work tied to the outcome of the current transaction
+ */
+final class TransactionUtils {
+
+    private TransactionUtils() {
+    }
+
+    /**
+     * Run the action once the current transaction commits (never on rollback),
+     * or right away when no transaction synchronization is active
+     */
+    static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
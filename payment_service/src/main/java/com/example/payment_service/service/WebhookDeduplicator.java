@@ -0,0 +1,113 @@
+package com.example.payment_service.service;
+
+import com.example.payment_service.payos.WebhookData;
+import com.example.payment_service.repository.WebhookInboxRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * Drops PayOS redeliveries of a webhook that was already journaled
+ *
+ * A webhook is identified by (paymentLinkId, code, reference). Keys are remembered in a bounded
+ * in-memory cache with a TTL once the webhook is in webhook_inbox; an exact redelivery to the same
+ * instance is answered before signature verification and without a query. With
+ * payos.webhook.dedup.persistent the journal is also checked (dedup_key index) to skip the insert
+ * for redeliveries to another replica or after a restart. Either way the unique dedup_key makes
+ * the journal the authority: a redelivery racing past both checks fails its insert.
+ *
+ * Outcomes are counted in payos.webhook.dedup{outcome}.
+ */
+@Service
+@Slf4j
+public class WebhookDeduplicator {
+
+    private final WebhookInboxRepository inboxRepository;
+    private final boolean persistent;
+    private final Cache<String, Boolean> seen;
+    private final Counter memoryHits;
+    private final Counter storeHits;
+    private final Counter misses;
+
+    public WebhookDeduplicator(WebhookInboxRepository inboxRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${payos.webhook.dedup.max-size:100000}") long maxSize,
+                               @Value("${payos.webhook.dedup.ttl-minutes:60}") long ttlMinutes,
+                               @Value("${payos.webhook.dedup.persistent:false}") boolean persistent) {
+        this.inboxRepository = inboxRepository;
+        this.persistent = persistent;
+        this.seen = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .build();
+        this.memoryHits = counter(meterRegistry, "memory_hit");
+        this.storeHits = counter(meterRegistry, "store_hit");
+        this.misses = counter(meterRegistry, "miss");
+    }
+
+    /**
+     * Dedup key of a webhook, or null if it carries nothing to identify it by
+     */
+    public String key(WebhookData data) {
+        if (data == null) {
+            return null;
+        }
+        String link = data.getPaymentLinkId() != null ? data.getPaymentLinkId()
+                : data.getOrderCode() != null ? "order:" + data.getOrderCode() : null;
+        if (link == null) {
+            return null;
+        }
+        return link + "|" + data.getCode() + "|" + data.getReference();
+    }
+
+    /**
+     * Memory-only check, cheap enough to run before signature verification
+     */
+    public boolean seenRecently(WebhookData data) {
+        String key = key(data);
+        if (key != null && seen.getIfPresent(key) != null) {
+            memoryHits.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Check a verified webhook against the journal (when persistent) before it is appended
+     */
+    public boolean isJournaled(String key) {
+        if (key == null) {
+            misses.increment();
+            return false;
+        }
+        if (persistent && inboxRepository.existsByDedupKey(key)) {
+            storeHits.increment();
+            seen.put(key, Boolean.TRUE);
+            return true;
+        }
+        misses.increment();
+        return false;
+    }
+
+    /**
+     * Remember a webhook once it is journaled
+     */
+    public void remember(String key) {
+        if (key != null) {
+            seen.put(key, Boolean.TRUE);
+        }
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("payos.webhook.dedup")
+                .description("PayOS webhook deduplication outcomes")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,360 @@
+package com.example.payment_service.service;
+
+import com.example.payment_service.entity.WebhookInbox;
+import com.example.payment_service.payos.Webhook;
+import com.example.payment_service.payos.WebhookData;
+import com.example.payment_service.repository.WebhookInboxRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous PayOS webhook ingestion
+ *
+ * The controller verifies the signature and calls accept(), which appends the webhook to
+ * webhook_inbox in a short transaction and queues it; PayOS gets its 200 without waiting for
+ * the payment update. Processing runs on a fixed set of single-threaded workers partitioned by
+ * orderCode, so webhooks of one payment are applied in arrival order. Each worker collects what
+ * arrives within batch-linger-ms into a micro-batch and applies it in one transaction
+ * (PaymentWebhookService.handlePaymentWebhooks).
+ *
+ * Accepted rows carry a lease like outbox events. A periodic sweep claims rows whose lease
+ * expired (crash, full queue) and failed rows that are due for a retry, on any instance,
+ * with FOR UPDATE SKIP LOCKED. The processing transaction locks its rows and only applies
+ * those still leased to this instance, so a row that sat in a local queue past its lease and
+ * was claimed elsewhere is processed once.
+ */
+@Service
+@Slf4j
+public class WebhookIngestionService {
+
+    private static final String PROVIDER_PAYOS = "PAYOS";
+
+    private final WebhookInboxRepository inboxRepository;
+    private final PaymentWebhookService webhookService;
+    private final WebhookDeduplicator deduplicator;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final String instanceId = "payment-service-" + UUID.randomUUID().toString().substring(0, 8);
+
+    @Value("${payos.webhook.ingest.workers:4}")
+    private int workerCount;
+
+    // Per worker; when full, the webhook stays journaled and is picked up by the sweep
+    @Value("${payos.webhook.ingest.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${payos.webhook.ingest.lease-seconds:60}")
+    private long leaseSeconds;
+
+    @Value("${payos.webhook.ingest.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${payos.webhook.ingest.sweep-batch-size:100}")
+    private int sweepBatchSize;
+
+    // Micro-batching: a worker waits up to batch-linger-ms for more webhooks, up to batch-size
+    @Value("${payos.webhook.ingest.batch-size:100}")
+    private int batchSize;
+
+    @Value("${payos.webhook.ingest.batch-linger-ms:5}")
+    private long batchLingerMs;
+
+    private volatile Partition[] partitions;
+    private volatile boolean running;
+
+    public WebhookIngestionService(WebhookInboxRepository inboxRepository,
+                                   PaymentWebhookService webhookService,
+                                   WebhookDeduplicator deduplicator,
+                                   ObjectMapper objectMapper,
+                                   TransactionTemplate transactionTemplate,
+                                   MeterRegistry meterRegistry) {
+        this.inboxRepository = inboxRepository;
+        this.webhookService = webhookService;
+        this.deduplicator = deduplicator;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Workers start with the bean - Tomcat accepts webhooks before ApplicationReadyEvent
+     */
+    @PostConstruct
+    public void start() {
+        running = true;
+        Partition[] started = new Partition[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            Partition partition = new Partition(queueCapacity);
+            partition.thread = new Thread(() -> workLoop(partition), "webhook-worker-" + i);
+            partition.thread.setDaemon(true);
+            partition.thread.start();
+            started[i] = partition;
+        }
+        partitions = started;
+        Gauge.builder("payos.webhook.ingest.queued", this, WebhookIngestionService::queued)
+                .description("PayOS webhooks accepted and waiting for a worker")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Pick up what a previous run left behind
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverOnStartup() {
+        sweep();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (partitions != null) {
+            // Queued rows keep their lease and are swept after it expires
+            for (Partition partition : partitions) {
+                partition.thread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Journal a verified webhook and queue it for processing
+     * Returns once the journal row is committed
+     *
+     * @return false if the webhook is a redelivery of one already journaled
+     */
+    public boolean accept(Webhook webhook, WebhookData webhookData) {
+        String dedupKey = deduplicator.key(webhookData);
+        if (deduplicator.isJournaled(dedupKey)) {
+            return false;
+        }
+
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(webhook);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to serialize webhook", e);
+        }
+
+        WebhookInbox entry;
+        try {
+            entry = transactionTemplate.execute(status -> inboxRepository.save(WebhookInbox.builder()
+                    .provider(PROVIDER_PAYOS)
+                    .orderCode(webhookData.getOrderCode())
+                    .dedupKey(dedupKey)
+                    .payload(payload)
+                    .lockedBy(instanceId)
+                    .lockedUntil(LocalDateTime.now().plusSeconds(leaseSeconds))
+                    .build()));
+        } catch (DataIntegrityViolationException e) {
+            // Unique dedup_key: journaled already, possibly by another replica
+            log.info("Webhook {} already journaled, dropping redelivery", dedupKey);
+            deduplicator.remember(dedupKey);
+            return false;
+        }
+
+        deduplicator.remember(dedupKey);
+
+        dispatch(entry.getId(), webhookData, 0);
+        return true;
+    }
+
+    /**
+     * Claim journaled webhooks that nobody is processing and queue them
+     */
+    @Scheduled(fixedDelayString = "${payos.webhook.ingest.sweep-interval-ms:10000}",
+               initialDelayString = "${payos.webhook.ingest.sweep-interval-ms:10000}")
+    public void sweep() {
+        try {
+            List<WebhookInbox> entries = transactionTemplate.execute(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                List<WebhookInbox> due = inboxRepository.lockDueEntries(now, maxAttempts, sweepBatchSize);
+                if (!due.isEmpty()) {
+                    inboxRepository.leaseEntries(due.stream().map(WebhookInbox::getId).toList(),
+                            instanceId, now.plusSeconds(leaseSeconds));
+                }
+                return due;
+            });
+            if (entries == null || entries.isEmpty()) {
+                return;
+            }
+
+            log.info("Recovered {} journaled webhooks for processing", entries.size());
+            for (WebhookInbox entry : entries) {
+                try {
+                    Webhook webhook = objectMapper.readValue(entry.getPayload(), Webhook.class);
+                    dispatch(entry.getId(), webhook.getData(), entry.getAttempts());
+                } catch (Exception e) {
+                    log.error("Unreadable journaled webhook {}: {}", entry.getId(), e.getMessage());
+                    fail(entry.getId(), entry.getAttempts(), e);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error in webhook inbox sweep", e);
+        }
+    }
+
+    /**
+     * Delete processed webhooks after 7 days
+     */
+    @Scheduled(cron = "0 15 2 * * *")
+    public void cleanupProcessed() {
+        try {
+            Integer deleted = transactionTemplate.execute(status ->
+                    inboxRepository.deleteProcessedBefore(LocalDateTime.now().minusDays(7)));
+            log.info("Cleaned up {} processed webhooks", deleted);
+        } catch (Exception e) {
+            log.error("Error cleaning up processed webhooks", e);
+        }
+    }
+
+    private void dispatch(Long entryId, WebhookData webhookData, int attempts) {
+        long orderCode = webhookData.getOrderCode() != null ? webhookData.getOrderCode() : 0L;
+        Partition partition = partitions[Math.floorMod(Long.hashCode(orderCode), partitions.length)];
+        if (!partition.queue.offer(new Task(entryId, webhookData, attempts))) {
+            log.warn("Webhook queue full, webhook {} (orderCode={}) left for the recovery sweep", entryId, orderCode);
+        }
+    }
+
+    /**
+     * Partition loop: take a webhook, linger briefly to collect a micro-batch, apply it
+     */
+    private void workLoop(Partition partition) {
+        List<Task> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Task first = partition.queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchLingerMs);
+                while (batch.size() < batchSize) {
+                    partition.queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    Task next = partition.queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                processBatch(batch);
+            } catch (InterruptedException e) {
+                // Unprocessed rows keep their lease and are swept after it expires
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Webhook worker round failed: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Apply a micro-batch and mark it processed in one transaction
+     * If the batch fails, its webhooks are retried one by one so a single bad webhook
+     * does not hold back the others
+     */
+    private void processBatch(List<Task> batch) {
+        if (batch.size() == 1) {
+            process(batch.get(0));
+            return;
+        }
+        try {
+            List<Long> entryIds = batch.stream().map(Task::entryId).toList();
+            transactionTemplate.executeWithoutResult(status -> {
+                Set<Long> owned = new HashSet<>(inboxRepository.lockOwnedEntries(entryIds, instanceId));
+                List<Task> tasks = batch.stream().filter(task -> owned.contains(task.entryId())).toList();
+                if (tasks.size() < batch.size()) {
+                    log.info("Skipping {} webhooks no longer leased to this instance", batch.size() - tasks.size());
+                }
+                if (tasks.isEmpty()) {
+                    return;
+                }
+                webhookService.handlePaymentWebhooks(tasks.stream().map(Task::webhookData).toList());
+                inboxRepository.markProcessed(tasks.stream().map(Task::entryId).toList(), LocalDateTime.now());
+            });
+        } catch (Exception e) {
+            log.warn("Batch of {} webhooks failed, retrying one by one: {}", batch.size(), e.getMessage());
+            batch.forEach(this::process);
+        }
+    }
+
+    /**
+     * Apply the webhook and mark it processed in the same transaction
+     */
+    private void process(Task task) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (inboxRepository.lockOwnedEntries(List.of(task.entryId()), instanceId).isEmpty()) {
+                    log.info("Skipping webhook {} - processed or leased to another instance", task.entryId());
+                    return;
+                }
+                webhookService.handlePaymentWebhook(task.webhookData());
+                inboxRepository.markProcessed(List.of(task.entryId()), LocalDateTime.now());
+            });
+        } catch (Exception e) {
+            log.error("Failed to process webhook {} (orderCode={}, attempt {}): {}",
+                    task.entryId(), task.webhookData().getOrderCode(), task.attempts() + 1, e.getMessage());
+            fail(task.entryId(), task.attempts(), e);
+        }
+    }
+
+    private void fail(Long entryId, int attempts, Exception error) {
+        try {
+            // Exponential backoff: 2^attempt seconds
+            LocalDateTime nextAttemptAt = LocalDateTime.now().plusSeconds((long) Math.pow(2, attempts + 1));
+            transactionTemplate.executeWithoutResult(status ->
+                    inboxRepository.markFailed(entryId, instanceId, error.getMessage(), nextAttemptAt));
+        } catch (Exception e) {
+            // Lease expiry makes the row claimable again
+            log.error("Failed to record webhook {} failure: {}", entryId, e.getMessage());
+        }
+    }
+
+    private double queued() {
+        int queued = 0;
+        for (Partition partition : partitions) {
+            queued += partition.queue.size();
+        }
+        return queued;
+    }
+
+    private record Task(Long entryId, WebhookData webhookData, int attempts) {
+    }
+
+    private static final class Partition {
+        final BlockingQueue<Task> queue;
+        Thread thread;
+
+        Partition(int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.payment_service.service;
+
+import com.example.payment_service.payos.PayOS;
+import com.example.payment_service.payos.Webhook;
+import com.example.payment_service.payos.WebhookData;
+import com.example.payment_service.payos.WebhookVerificationMode;
+import com.example.payment_service.payos.WebhookVerificationResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Verifies PayOS webhook signatures before any payment is loaded
+ *
+ * Runs outside the webhook transaction, so a forged or corrupted webhook never opens a
+ * database connection. Outcomes are counted in payos.webhook.verification{outcome}; once
+ * legacy_fallback stays at zero, payos.webhook.verification-mode can be switched to STRICT.
+ */
+@Service
+@Slf4j
+public class WebhookSignatureVerifier {
+
+    private final PayOS payOS;
+    private final WebhookVerificationMode mode;
+    private final Map<WebhookVerificationResult, Counter> counters = new EnumMap<>(WebhookVerificationResult.class);
+
+    public WebhookSignatureVerifier(PayOS payOS,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${payos.webhook.verification-mode:LEGACY}") WebhookVerificationMode mode) {
+        this.payOS = payOS;
+        this.mode = mode;
+        for (WebhookVerificationResult result : WebhookVerificationResult.values()) {
+            counters.put(result, Counter.builder("payos.webhook.verification")
+                    .description("PayOS webhook signature verification outcomes")
+                    .tag("mode", mode.name().toLowerCase())
+                    .tag("outcome", result.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        log.info("PayOS webhook signature verification mode: {}", mode);
+    }
+
+    /**
+     * @return the verified webhook data
+     * @throws RuntimeException if the webhook is rejected
+     */
+    public WebhookData verify(Webhook webhook) {
+        WebhookVerificationResult result = payOS.verifyWebhookSignature(webhook, mode);
+        counters.get(result).increment();
+        if (!result.isAccepted()) {
+            throw new RuntimeException("Invalid webhook signature");
+        }
+        return webhook.getData();
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.payment_service.payos;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Captures the createPaymentLink request body sent to a local stub of PayOS
+ */
+class PayOSCreatePaymentLinkRequestTest {
+
+    private static final String CHECKOUT_RESPONSE = "{\"code\":\"00\",\"desc\":\"success\",\"data\":{"
+            + "\"amount\":100000,\"description\":\"Purchase Basic\",\"orderCode\":1730000000000,"
+            + "\"currency\":\"VND\",\"paymentLinkId\":\"stub-link\",\"status\":\"PENDING\","
+            + "\"checkoutUrl\":\"http://localhost/checkout\"}}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicReference<byte[]> capturedBody = new AtomicReference<>();
+    private HttpServer server;
+    private PayOS payOS;
+
+    @BeforeEach
+    void startStub() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        byte[] response = CHECKOUT_RESPONSE.getBytes(StandardCharsets.UTF_8);
+        server.createContext("/v2/payment-requests", exchange -> {
+            capturedBody.set(exchange.getRequestBody().readAllBytes());
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+        payOS = new PayOS("client", "api-key", "checksum",
+                "http://localhost:" + server.getAddress().getPort(), new OkHttpClient());
+    }
+
+    @AfterEach
+    void stopStub() {
+        payOS.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void sendsExpiredAtOutsideTheSignedFields() throws Exception {
+        PaymentData paymentData = paymentData(1_730_000_900);
+
+        payOS.createPaymentLink(paymentData);
+
+        JsonNode body = objectMapper.readTree(capturedBody.get());
+        assertThat(body.get("expiredAt").asLong()).isEqualTo(1_730_000_900L);
+        assertThat(body.get("signature").asText()).isEqualTo(payOS.generateSignature(paymentData(null)));
+    }
+
+    @Test
+    void omitsExpiredAtWhenNotSet() throws Exception {
+        payOS.createPaymentLink(paymentData(null));
+
+        JsonNode body = objectMapper.readTree(capturedBody.get());
+        assertThat(body.has("expiredAt")).isFalse();
+    }
+
+    private static PaymentData paymentData(Integer expiredAt) {
+        return PaymentData.builder()
+                .orderCode(1_730_000_000_000L)
+                .amount(100000)
+                .description("Purchase Basic")
+                .items(List.of(ItemData.builder().name("Basic - 100 credits").quantity(1).price(100000).build()))
+                .returnUrl("http://localhost/return")
+                .cancelUrl("http://localhost/cancel")
+                .expiredAt(expiredAt)
+                .build();
+    }
+}
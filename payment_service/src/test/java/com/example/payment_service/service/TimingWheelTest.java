@@ -0,0 +1,131 @@
+package com.example.payment_service.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * TimingWheel driven tick by tick with a manual clock - never started, so no wheel thread runs
+ */
+class TimingWheelTest {
+
+    private static final long TICK_MS = 10;
+    // Small wheel so a few hundred ticks already go through three levels
+    private static final int WHEEL_SIZE = 4;
+    private static final long START = 1_000_000;
+
+    private long now = START;
+    private final List<List<Integer>> fired = new ArrayList<>();
+    private final Map<Integer, Long> firedAt = new HashMap<>();
+    private final TimingWheel<Integer> wheel = new TimingWheel<>("test", TICK_MS, WHEEL_SIZE, keys -> {
+        fired.add(List.copyOf(keys));
+        for (Integer key : keys) {
+            firedAt.put(key, now);
+        }
+    }, () -> now);
+
+    @Test
+    void firesOnTheTickOfTheDeadline() {
+        wheel.schedule(1, START + 35);
+
+        advanceTo(START + 20);
+        assertTrue(fired.isEmpty());
+
+        advanceTo(START + 30);
+        assertEquals(List.of(List.of(1)), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void dueDeadlinesFireOnTheNextTick() {
+        wheel.schedule(1, START - 5000);
+        wheel.schedule(2, 0);
+
+        advanceTo(START + TICK_MS);
+
+        assertEquals(1, fired.size());
+        assertEquals(List.of(1, 2), fired.get(0).stream().sorted().toList());
+    }
+
+    @Test
+    void farDeadlinesCascadeDownToTheirTick() {
+        // 4, 16 and 64 ticks per bucket on levels 1-3; include the slot + wheelSize bucket collisions
+        long[] delays = {40, 150, 160, 170, 640, 650, 2550, 2560, 2570, 10_000};
+        for (int i = 0; i < delays.length; i++) {
+            wheel.schedule(i, START + delays[i]);
+        }
+
+        advanceTo(START + 12_000);
+
+        for (int i = 0; i < delays.length; i++) {
+            assertEquals(START + delays[i], firedAt.get(i), "deadline +" + delays[i]);
+        }
+    }
+
+    @Test
+    void randomDeadlinesFireExactlyOnceOnTheirTick() {
+        Random random = new Random(42);
+        Map<Integer, Long> expected = new HashMap<>();
+        for (int key = 0; key < 2000; key++) {
+            long deadline = START + random.nextInt(50_000);
+            wheel.schedule(key, deadline);
+            // Fires on the tick the deadline falls in, but no earlier than the next advance
+            expected.put(key, Math.max(deadline / TICK_MS * TICK_MS, now + TICK_MS));
+            if (key % 50 == 0) {
+                // Interleave scheduling with progress so entries are placed at different ticks
+                advanceTo(now + TICK_MS);
+            }
+        }
+
+        advanceTo(START + 60_000);
+
+        assertEquals(expected, firedAt);
+        assertEquals(expected.size(), fired.stream().mapToInt(List::size).sum());
+    }
+
+    @Test
+    void catchesUpAfterMissedTicks() {
+        wheel.schedule(1, START + 30);
+        wheel.schedule(2, START + 700);
+        wheel.schedule(3, START + 5000);
+        wheel.schedule(4, START + 9000);
+        advanceTo(START + TICK_MS);
+
+        // Well past one revolution of levels 0-2 in a single advance
+        now = START + 6000;
+        wheel.advance();
+        assertEquals(List.of(1, 2, 3), fired.get(0).stream().sorted().toList());
+
+        advanceTo(START + 9000);
+        assertEquals(START + 9000, firedAt.get(4));
+    }
+
+    @Test
+    void cancelledAndRescheduledDeadlines() {
+        wheel.schedule(1, START + 200);
+        wheel.schedule(2, START + 200);
+        advanceTo(START + 50);
+
+        wheel.cancel(1);
+        wheel.schedule(2, START + 900);
+
+        advanceTo(START + 1000);
+
+        assertEquals(List.of(List.of(2)), fired);
+        assertEquals(START + 900, firedAt.get(2));
+    }
+
+    private void advanceTo(long time) {
+        while (now < time) {
+            now += TICK_MS;
+            wheel.advance();
+        }
+    }
+}